@@ -53,5 +53,7 @@ public interface Limbo {
 
   Limbo registerPacket(PacketDirection direction, Class<?> packetClass, Supplier<?> packetSupplier, PacketMapping[] packetMappings);
 
+  void updateWorld();
+
   void dispose();
 }
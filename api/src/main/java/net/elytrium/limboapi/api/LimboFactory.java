@@ -20,6 +20,7 @@ import net.elytrium.limboapi.api.chunk.VirtualBlock;
 import net.elytrium.limboapi.api.chunk.VirtualBlockEntity;
 import net.elytrium.limboapi.api.chunk.VirtualChunk;
 import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.api.chunk.WorldStorageType;
 import net.elytrium.limboapi.api.file.BuiltInWorldFileType;
 import net.elytrium.limboapi.api.file.WorldFile;
 import net.elytrium.limboapi.api.material.Block;
@@ -118,6 +119,41 @@ public interface LimboFactory {
    */
   VirtualWorld createVirtualWorld(Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch);
 
+  /**
+   * Creates new virtual world.
+   *
+   * @param dimension  World dimension.
+   * @param posX       Spawn location. (X)
+   * @param posY       Spawn location. (Y)
+   * @param posZ       Spawn location. (Z)
+   * @param yaw        Spawn rotation. (Yaw)
+   * @param pitch      Spawn rotation. (Pitch)
+   * @param concurrent Allow populating disjoint regions of the world from multiple threads.
+   *                   Call {@link VirtualWorld#freeze()} after the world is built.
+   *
+   * @return new virtual world.
+   */
+  VirtualWorld createVirtualWorld(Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch, boolean concurrent);
+
+  /**
+   * Creates new virtual world.
+   *
+   * @param dimension   World dimension.
+   * @param posX        Spawn location. (X)
+   * @param posY        Spawn location. (Y)
+   * @param posZ        Spawn location. (Z)
+   * @param yaw         Spawn rotation. (Yaw)
+   * @param pitch       Spawn rotation. (Pitch)
+   * @param concurrent  Allow populating disjoint regions of the world from multiple threads.
+   *                    Call {@link VirtualWorld#freeze()} after the world is built.
+   * @param storageType Where the block data of the world is kept.
+   *                    {@link WorldStorageType#MAPPED} keeps it outside the heap, for very large worlds.
+   *
+   * @return new virtual world.
+   */
+  VirtualWorld createVirtualWorld(Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch,
+                                  boolean concurrent, WorldStorageType storageType);
+
   /**
    * Creates new virtual chunk with plain biomes set as default.
    * You need to provide the chunk location, you can get it using {@code blockCoordinate >> 4}.
@@ -284,4 +320,35 @@ public interface LimboFactory {
    * @return Ready to use WorldFile
    */
   WorldFile openWorldFile(BuiltInWorldFileType apiType, CompoundBinaryTag tag);
+
+  /**
+   * Opens the chunks of an Anvil world (1.18+) inside the bounding box
+   *
+   * @param regionDirectory Directory with the r.X.Z.mca files
+   * @param minChunkX Min chunk X of the box
+   * @param minChunkZ Min chunk Z of the box
+   * @param maxChunkX Max chunk X of the box
+   * @param maxChunkZ Max chunk Z of the box
+   * @return Ready to use WorldFile
+   */
+  WorldFile openAnvilWorldFile(Path regionDirectory, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) throws IOException;
+
+  /**
+   * Opens the chunks of an Anvil world (1.18+) in the radius around the center chunk
+   *
+   * @param regionDirectory Directory with the r.X.Z.mca files
+   * @param centerChunkX Center chunk X, e.g. the spawn chunk
+   * @param centerChunkZ Center chunk Z, e.g. the spawn chunk
+   * @param radius Radius in chunks
+   * @return Ready to use WorldFile
+   */
+  WorldFile openAnvilWorldFile(Path regionDirectory, int centerChunkX, int centerChunkZ, int radius) throws IOException;
+
+  /**
+   * Saves the world in the {@link BuiltInWorldFileType#LIMBO_WORLD} format
+   *
+   * @param world World to save
+   * @param file Target file
+   */
+  void saveWorldFile(VirtualWorld world, Path file) throws IOException;
 }
@@ -24,6 +24,28 @@ public interface VirtualChunk {
   @NonNull
   VirtualBlock getBlock(int posX, int posY, int posZ);
 
+  default void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @Nullable VirtualBlock block) {
+    for (int posY = Math.min(fromY, toY); posY <= Math.max(fromY, toY); ++posY) {
+      for (int posZ = Math.min(fromZ, toZ); posZ <= Math.max(fromZ, toZ); ++posZ) {
+        for (int posX = Math.min(fromX, toX); posX <= Math.max(fromX, toX); ++posX) {
+          this.setBlock(posX, posY, posZ, block);
+        }
+      }
+    }
+  }
+
+  default void replace(@NonNull VirtualBlock from, @Nullable VirtualBlock to) {
+    for (int posY = 0; posY < 256; ++posY) {
+      for (int posZ = 0; posZ < 16; ++posZ) {
+        for (int posX = 0; posX < 16; ++posX) {
+          if (this.getBlock(posX, posY, posZ).equals(from)) {
+            this.setBlock(posX, posY, posZ, to);
+          }
+        }
+      }
+    }
+  }
+
   void setBiome2D(int posX, int posZ, @NonNull VirtualBiome biome);
 
   void setBiome3D(int posX, int posY, int posZ, @NonNull VirtualBiome biome);
@@ -7,6 +7,7 @@
 
 package net.elytrium.limboapi.api.chunk;
 
+import java.util.ArrayList;
 import java.util.List;
 import net.kyori.adventure.nbt.CompoundBinaryTag;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -26,6 +27,33 @@ public interface VirtualWorld {
 
   VirtualBiome getBiome(int posX, int posY, int posZ);
 
+  default boolean isSolid(int posX, int posY, int posZ) {
+    return this.getBlock(posX, posY, posZ).isSolid();
+  }
+
+  default boolean isMotionBlocking(int posX, int posY, int posZ) {
+    return this.getBlock(posX, posY, posZ).isMotionBlocking();
+  }
+
+  default boolean intersectsSolid(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+    // Blocks are treated as full cubes, a box touching a block face doesn't intersect it.
+    for (int posY = (int) Math.floor(minY); posY < (int) Math.ceil(maxY); ++posY) {
+      for (int posZ = (int) Math.floor(minZ); posZ < (int) Math.ceil(maxZ); ++posZ) {
+        for (int posX = (int) Math.floor(minX); posX < (int) Math.ceil(maxX); ++posX) {
+          if (this.isSolid(posX, posY, posZ)) {
+            return true;
+          }
+        }
+      }
+    }
+
+    return false;
+  }
+
+  default void enableCollisionIndex() {
+    // The index only speeds up isSolid and intersectsSolid, they are correct without it.
+  }
+
   byte getBlockLight(int posX, int posY, int posZ);
 
   void setBlockLight(int posX, int posY, int posZ, byte light);
@@ -38,6 +66,31 @@ public interface VirtualWorld {
 
   List<List<VirtualChunk>> getOrderedChunks();
 
+  default List<List<VirtualChunk>> getOrderedChunks(int posX, int posZ) {
+    // Chunks split by the (int) distance to the chunk of the position.
+    List<List<VirtualChunk>> rings = new ArrayList<>();
+    for (VirtualChunk chunk : this.getChunks()) {
+      long diffX = chunk.getPosX() - (posX >> 4);
+      long diffZ = chunk.getPosZ() - (posZ >> 4);
+      int ring = (int) Math.sqrt(diffX * diffX + diffZ * diffZ);
+      while (rings.size() <= ring) {
+        rings.add(new ArrayList<>());
+      }
+
+      rings.get(ring).add(chunk);
+    }
+
+    return rings;
+  }
+
+  default void freeze() {
+    // Freezing only lets the world skip its synchronization, a world that is never frozen stays correct.
+  }
+
+  default boolean isFrozen() {
+    return false;
+  }
+
   @Nullable
   VirtualChunk getChunk(int posX, int posZ);
 
@@ -57,4 +110,38 @@ public interface VirtualWorld {
   float getPitch();
 
   void setBlock(int posX, int posY, int posZ, @Nullable VirtualBlock block);
+
+  default void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @Nullable VirtualBlock block) {
+    for (int posY = Math.min(fromY, toY); posY <= Math.max(fromY, toY); ++posY) {
+      for (int posZ = Math.min(fromZ, toZ); posZ <= Math.max(fromZ, toZ); ++posZ) {
+        for (int posX = Math.min(fromX, toX); posX <= Math.max(fromX, toX); ++posX) {
+          this.setBlock(posX, posY, posZ, block);
+        }
+      }
+    }
+  }
+
+  default void replace(@NonNull VirtualBlock from, @Nullable VirtualBlock to) {
+    for (VirtualChunk chunk : this.getChunks()) {
+      chunk.replace(from, to);
+    }
+  }
+
+  default void copy(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, int destX, int destY, int destZ) {
+    int minX = Math.min(fromX, toX);
+    int minY = Math.min(fromY, toY);
+    int minZ = Math.min(fromZ, toZ);
+    int sizeX = Math.max(fromX, toX) - minX + 1;
+    int sizeY = Math.max(fromY, toY) - minY + 1;
+    int sizeZ = Math.max(fromZ, toZ) - minZ + 1;
+    // The whole region is read before anything is written, so the source and the destination may overlap.
+    VirtualBlock[] blocks = new VirtualBlock[Math.multiplyExact(Math.multiplyExact(sizeX, sizeY), sizeZ)];
+    for (int i = 0; i < blocks.length; ++i) {
+      blocks[i] = this.getBlock(minX + i % sizeX, minY + i / sizeX / sizeZ, minZ + i / sizeX % sizeZ);
+    }
+
+    for (int i = 0; i < blocks.length; ++i) {
+      this.setBlock(destX + i % sizeX, destY + i / sizeX / sizeZ, destZ + i / sizeX % sizeZ, blocks[i]);
+    }
+  }
 }
@@ -0,0 +1,15 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * The LimboAPI (excluding the LimboAPI plugin) is licensed under the terms of the MIT License. For more details,
+ * reference the LICENSE file in the api top-level directory.
+ */
+
+package net.elytrium.limboapi.api.chunk;
+
+public enum WorldStorageType {
+
+  HEAP,
+  // Block data is kept in a memory-mapped temporary file instead of the heap.
+  MAPPED
+}
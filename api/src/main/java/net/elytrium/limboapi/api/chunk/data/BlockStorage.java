@@ -24,6 +24,38 @@ public interface BlockStorage {
 
   BlockStorage copy();
 
+  default void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @NonNull VirtualBlock block) {
+    for (int posY = fromY; posY <= toY; ++posY) {
+      for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+        for (int posX = fromX; posX <= toX; ++posX) {
+          this.set(posX, posY, posZ, block);
+        }
+      }
+    }
+  }
+
+  default void setPaletted(@NonNull VirtualBlock[] palette, int[] indices) {
+    for (int i = 0; i < indices.length; ++i) {
+      this.set(i & 15, i >> 8, i >> 4 & 15, palette[indices[i]]);
+    }
+  }
+
+  default boolean replace(@NonNull VirtualBlock from, @NonNull VirtualBlock to) {
+    boolean replaced = false;
+    for (int posY = 0; posY < 16; ++posY) {
+      for (int posZ = 0; posZ < 16; ++posZ) {
+        for (int posX = 0; posX < 16; ++posX) {
+          if (this.get(posX, posY, posZ).equals(from)) {
+            this.set(posX, posY, posZ, to);
+            replaced = true;
+          }
+        }
+      }
+    }
+
+    return replaced;
+  }
+
   static int index(int posX, int posY, int posZ) {
     return posY << 8 | posZ << 4 | posX;
   }
@@ -28,5 +28,9 @@ public interface ChunkSnapshot {
 
   VirtualBiome[] getBiomes();
 
+  default VirtualBiome getBiome(int posX, int posY, int posZ) {
+    return this.getBiomes()[(posY >> 2 & 63) << 4 | (posZ >> 2 & 3) << 2 | posX >> 2 & 3];
+  }
+
   List<VirtualBlockEntity.Entry> getBlockEntityEntries();
 }
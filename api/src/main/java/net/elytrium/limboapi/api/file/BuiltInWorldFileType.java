@@ -10,5 +10,7 @@ package net.elytrium.limboapi.api.file;
 public enum BuiltInWorldFileType {
   SCHEMATIC,
   WORLDEDIT_SCHEM,
-  STRUCTURE
+  STRUCTURE,
+  LIMBO_WORLD,
+  ANVIL_REGION
 }
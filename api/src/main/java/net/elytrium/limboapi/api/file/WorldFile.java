@@ -18,4 +18,10 @@ public interface WorldFile {
   }
 
   void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, @IntRange(from = 0, to = 15) int lightLevel);
+
+  // Parallel loading runs on the chunk preparation pool of LimboAPI, which has chunk-preparation-threads threads.
+  default void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ,
+                       @IntRange(from = 0, to = 15) int lightLevel, boolean parallel) {
+    this.toWorld(factory, world, offsetX, offsetY, offsetZ, lightLevel);
+  }
 }
@@ -68,9 +68,7 @@ public class NibbleArray3D {
   }
 
   public void fill(int value) {
-    for (int index = 0; index < this.data.length << 1; ++index) {
-      this.set(index, value);
-    }
+    Arrays.fill(this.data, (byte) ((value & 15) << 4 | value & 15));
   }
 
   public NibbleArray3D copy() {
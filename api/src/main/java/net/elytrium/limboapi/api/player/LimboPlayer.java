@@ -74,5 +74,7 @@ public interface LimboPlayer {
 
   int getPing();
 
+  int getQueuedChunkBatches();
+
   void setWorldTime(long ticks);
 }
@@ -21,9 +21,8 @@ public class BiomeData {
   private final byte[] pre115Biomes = new byte[256];
 
   public BiomeData(ChunkSnapshot chunk) {
-    VirtualBiome[] biomes = chunk.getBiomes();
-    for (int i = 0; i < biomes.length; ++i) {
-      this.post115Biomes[i] = biomes[i].getID();
+    for (int i = 0; i < this.post115Biomes.length; ++i) {
+      this.post115Biomes[i] = chunk.getBiome((i & 3) << 2, i >> 4 << 2, (i >> 2 & 3) << 2).getID();
     }
 
     // Down sample 4x4x4 3D biomes to 2D XZ.
@@ -32,7 +31,7 @@ public class BiomeData {
       for (int posZ = 0; posZ < 16; posZ += 4) {
         samples.clear();
         for (int posY = 0; posY < 256; posY += 16) {
-          VirtualBiome biome = biomes[/*SimpleChunk.getBiomeIndex(posX, posY, posZ)*/(posY >> 2 & 63) << 4 | (posZ >> 2 & 3) << 2 | posX >> 2 & 3];
+          VirtualBiome biome = chunk.getBiome(posX, posY, posZ);
           samples.put(biome.getID(), samples.getOrDefault(biome.getID(), 0) + 1);
         }
         int id = samples.entrySet()
@@ -60,6 +60,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import net.elytrium.commons.config.YamlConfig;
 import net.elytrium.commons.kyori.serialization.Serializer;
@@ -77,6 +80,7 @@ import net.elytrium.limboapi.api.chunk.VirtualBlock;
 import net.elytrium.limboapi.api.chunk.VirtualBlockEntity;
 import net.elytrium.limboapi.api.chunk.VirtualChunk;
 import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.api.chunk.WorldStorageType;
 import net.elytrium.limboapi.api.file.BuiltInWorldFileType;
 import net.elytrium.limboapi.api.file.WorldFile;
 import net.elytrium.limboapi.api.material.Block;
@@ -85,6 +89,8 @@ import net.elytrium.limboapi.api.material.VirtualItem;
 import net.elytrium.limboapi.api.protocol.PreparedPacket;
 import net.elytrium.limboapi.api.protocol.item.ItemComponentMap;
 import net.elytrium.limboapi.api.protocol.packets.PacketFactory;
+import net.elytrium.limboapi.file.AnvilWorldFile;
+import net.elytrium.limboapi.file.LimboWorldFile;
 import net.elytrium.limboapi.file.WorldFileTypeRegistry;
 import net.elytrium.limboapi.injection.disconnect.DisconnectListener;
 import net.elytrium.limboapi.injection.event.EventManagerHook;
@@ -100,6 +106,8 @@ import net.elytrium.limboapi.injection.packet.UpsertPlayerInfoHook;
 import net.elytrium.limboapi.material.Biome;
 import net.elytrium.limboapi.protocol.LimboProtocol;
 import net.elytrium.limboapi.protocol.packets.PacketFactoryImpl;
+import net.elytrium.limboapi.protocol.packets.s2c.ChunkDataPacket;
+import net.elytrium.limboapi.protocol.util.WireFormat;
 import net.elytrium.limboapi.server.CachedPackets;
 import net.elytrium.limboapi.server.LimboImpl;
 import net.elytrium.limboapi.server.item.SimpleItemComponentManager;
@@ -161,6 +169,7 @@ public class LimboAPI implements LimboFactory {
   private LoginListener loginListener;
   private boolean compressionEnabled;
   private EventManagerHook eventManagerHook;
+  private ForkJoinPool chunkPreparationPool;
 
   @Inject
   public LimboAPI(Logger logger, ProxyServer server, Metrics.Factory metricsFactory, @DataDirectory Path dataDirectory) {
@@ -192,6 +201,7 @@ public class LimboAPI implements LimboFactory {
     SimpleBlockEntity.init();
     SimpleItem.init();
     SimpleTagManager.init();
+    WireFormat.init();
     LOGGER.info("Hooking into PlayerList/UpsertPlayerInfo and StateRegistry...");
     try {
       LegacyPlayerListItemHook.init(this, LimboProtocol.PLAY_CLIENTBOUND_REGISTRY);
@@ -292,6 +302,8 @@ public class LimboAPI implements LimboFactory {
 
     LOGGER.info("Creating and preparing packets...");
     this.reloadVersion();
+    this.shutdownChunkPreparationPool();
+    ChunkDataPacket.releaseCompressors();
     this.packets.createPackets();
     this.loginListener = new LoginListener(this, this.server);
     this.eventManagerHook = new EventManagerHook(this, this.server.getEventManager());
@@ -377,7 +389,19 @@ public class LimboAPI implements LimboFactory {
 
   @Override
   public VirtualWorld createVirtualWorld(Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch) {
-    return new SimpleWorld(dimension, posX, posY, posZ, yaw, pitch);
+    return this.createVirtualWorld(dimension, posX, posY, posZ, yaw, pitch, false);
+  }
+
+  @Override
+  public VirtualWorld createVirtualWorld(Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch, boolean concurrent) {
+    return this.createVirtualWorld(dimension, posX, posY, posZ, yaw, pitch, concurrent, WorldStorageType.HEAP);
+  }
+
+  @Override
+  public VirtualWorld createVirtualWorld(Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch,
+                                         boolean concurrent, WorldStorageType storageType) {
+    // The pool is taken on every task, as it is recreated after the reload.
+    return new SimpleWorld(dimension, posX, posY, posZ, yaw, pitch, concurrent, storageType, task -> this.getChunkPreparationPool().execute(task));
   }
 
   @Override
@@ -678,6 +702,35 @@ public class LimboAPI implements LimboFactory {
     return this.maxVersion;
   }
 
+  public synchronized ForkJoinPool getChunkPreparationPool() {
+    if (this.chunkPreparationPool == null) {
+      int threads = Settings.IMP.MAIN.CHUNK_PREPARATION_THREADS;
+      AtomicInteger threadCounter = new AtomicInteger();
+      this.chunkPreparationPool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+
+          @Override
+          protected void onTermination(Throwable exception) {
+            // Free the compressor that the PreparedPacketFactory has allocated for this thread.
+            LimboAPI.this.releasePreparedPacketThread(this);
+            super.onTermination(exception);
+          }
+        };
+        thread.setName("LimboAPI Chunk Preparation #" + threadCounter.incrementAndGet());
+        return thread;
+      }, null, false);
+    }
+
+    return this.chunkPreparationPool;
+  }
+
+  private synchronized void shutdownChunkPreparationPool() {
+    if (this.chunkPreparationPool != null) {
+      this.chunkPreparationPool.shutdown();
+      this.chunkPreparationPool = null;
+    }
+  }
+
   public EventManagerHook getEventManagerHook() {
     return this.eventManagerHook;
   }
@@ -697,6 +750,21 @@ public class LimboAPI implements LimboFactory {
     return WorldFileTypeRegistry.fromApiType(apiType, tag);
   }
 
+  @Override
+  public WorldFile openAnvilWorldFile(Path regionDirectory, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) throws IOException {
+    return AnvilWorldFile.open(regionDirectory, minChunkX, minChunkZ, maxChunkX, maxChunkZ);
+  }
+
+  @Override
+  public WorldFile openAnvilWorldFile(Path regionDirectory, int centerChunkX, int centerChunkZ, int radius) throws IOException {
+    return AnvilWorldFile.open(regionDirectory, centerChunkX, centerChunkZ, radius);
+  }
+
+  @Override
+  public void saveWorldFile(VirtualWorld world, Path file) throws IOException {
+    LimboWorldFile.write(world, file);
+  }
+
   private static void setLogger(Logger logger) {
     LOGGER = logger;
   }
@@ -116,8 +116,22 @@ public class Settings extends YamlConfig {
     })
     public int CHUNK_RADIUS_SEND_ON_SPAWN = 2;
 
-    @Comment("How many chunks we should send per tick")
+    @Comment("How many chunks we should send in one delayed batch")
     public int CHUNKS_PER_TICK = 16;
+    @Comment({
+        "Soft limit of the delayed chunk bytes sent per tick. Batches (CHUNKS_PER_TICK chunks each) are sent whole until",
+        "the limit is reached, so a tick can go over it by up to one batch, and at least one batch is sent per tick.",
+        "Delayed chunks aren't sent while the player connection isn't writable."
+    })
+    public int CHUNK_BYTES_PER_TICK = 262144;
+
+    @Comment({
+        "Encode and compress the chunks of the Limbo worlds on multiple threads.",
+        "Speeds up building of large worlds, but uses more CPU during the build."
+    })
+    public boolean PARALLEL_CHUNK_PREPARATION = false;
+    @Comment("Threads used for the parallel chunk preparation. 0 = number of available processors.")
+    public int CHUNK_PREPARATION_THREADS = 0;
 
     @Comment("Maximum delay for receiving ChatSession packet (for online-mode client-side race condition mitigation)")
     public int CHAT_SESSION_PACKET_TIMEOUT = 5000;
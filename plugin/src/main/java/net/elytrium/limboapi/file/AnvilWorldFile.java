@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import net.elytrium.limboapi.LimboAPI;
+import net.elytrium.limboapi.api.LimboFactory;
+import net.elytrium.limboapi.api.chunk.VirtualBiome;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.VirtualBlockEntity;
+import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.api.file.WorldFile;
+import net.elytrium.limboapi.api.mcprotocollib.NibbleArray3D;
+import net.elytrium.limboapi.material.Biome;
+import net.elytrium.limboapi.mcprotocollib.BitStorage116;
+import net.elytrium.limboapi.server.world.SimpleWorld;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import net.elytrium.limboapi.server.world.chunk.SimpleSection;
+import net.kyori.adventure.nbt.BinaryTag;
+import net.kyori.adventure.nbt.BinaryTagIO;
+import net.kyori.adventure.nbt.CompoundBinaryTag;
+import net.kyori.adventure.nbt.ListBinaryTag;
+
+// Anvil region files (1.18+ chunks). Region files are mapped into memory and only the chunks inside the bounds are decompressed.
+public class AnvilWorldFile implements WorldFile {
+
+  private static final int SECTOR_SIZE = 4096;
+  private static final int REGION_CHUNKS = 32;
+  private static final int SECTION_BIOMES = 64;
+  private static final int BLOCK_LIGHT_BYTES = SimpleChunk.MAX_BLOCKS_PER_SECTION >> 1;
+  private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+  private final List<Region> regions;
+  private final int minChunkX;
+  private final int minChunkZ;
+  private final int maxChunkX;
+  private final int maxChunkZ;
+  // Chunks farther than the radius from the center are skipped, -1 to load the whole box.
+  private final long radiusSquared;
+
+  private AnvilWorldFile(List<Region> regions, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, long radiusSquared) {
+    this.regions = regions;
+    this.minChunkX = minChunkX;
+    this.minChunkZ = minChunkZ;
+    this.maxChunkX = maxChunkX;
+    this.maxChunkZ = maxChunkZ;
+    this.radiusSquared = radiusSquared;
+  }
+
+  // Region without a known position, e.g. read from a stream. Chunks are placed as if it was r.0.0.mca.
+  public AnvilWorldFile(ByteBuffer region) {
+    this(List.of(new Region(0, 0, region)), 0, 0, REGION_CHUNKS - 1, REGION_CHUNKS - 1, -1);
+  }
+
+  // Whole region file, its position is taken from the r.X.Z.mca name.
+  public static AnvilWorldFile open(Path file) throws IOException {
+    Matcher name = REGION_NAME.matcher(file.getFileName().toString());
+    if (!name.matches()) {
+      throw new IllegalArgumentException("Region file name " + file.getFileName() + " doesn't match r.X.Z.mca");
+    }
+
+    int regionX = Integer.parseInt(name.group(1));
+    int regionZ = Integer.parseInt(name.group(2));
+    Region region = new Region(regionX, regionZ, map(file));
+    int minChunkX = regionX * REGION_CHUNKS;
+    int minChunkZ = regionZ * REGION_CHUNKS;
+    return new AnvilWorldFile(List.of(region), minChunkX, minChunkZ, minChunkX + REGION_CHUNKS - 1, minChunkZ + REGION_CHUNKS - 1, -1);
+  }
+
+  public static AnvilWorldFile open(Path regionDirectory, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) throws IOException {
+    return open(
+        regionDirectory, Math.min(minChunkX, maxChunkX), Math.min(minChunkZ, maxChunkZ), Math.max(minChunkX, maxChunkX), Math.max(minChunkZ, maxChunkZ), -1
+    );
+  }
+
+  public static AnvilWorldFile open(Path regionDirectory, int centerChunkX, int centerChunkZ, int radius) throws IOException {
+    return open(regionDirectory, centerChunkX - radius, centerChunkZ - radius, centerChunkX + radius, centerChunkZ + radius, (long) radius * radius);
+  }
+
+  private static AnvilWorldFile open(Path regionDirectory, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, long radiusSquared)
+      throws IOException {
+    List<Region> regions = new ArrayList<>();
+    for (int regionX = Math.floorDiv(minChunkX, REGION_CHUNKS); regionX <= Math.floorDiv(maxChunkX, REGION_CHUNKS); ++regionX) {
+      for (int regionZ = Math.floorDiv(minChunkZ, REGION_CHUNKS); regionZ <= Math.floorDiv(maxChunkZ, REGION_CHUNKS); ++regionZ) {
+        Path file = regionDirectory.resolve("r." + regionX + "." + regionZ + ".mca");
+        if (Files.isRegularFile(file)) {
+          regions.add(new Region(regionX, regionZ, map(file)));
+        }
+      }
+    }
+
+    return new AnvilWorldFile(regions, minChunkX, minChunkZ, maxChunkX, maxChunkZ, radiusSquared);
+  }
+
+  private static ByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel) {
+    this.toWorld(factory, world, offsetX, offsetY, offsetZ, lightLevel, false);
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel, boolean parallel) {
+    // Sections are swapped in directly only if the section grid of the region matches the world one.
+    SimpleWorld simpleWorld = world instanceof SimpleWorld && ((offsetX | offsetY | offsetZ) & 15) == 0 ? (SimpleWorld) world : null;
+    Map<CompoundBinaryTag, VirtualBlock> blocks = new ConcurrentHashMap<>();
+    List<ChunkReader> readers = new ArrayList<>();
+    for (Region region : this.regions) {
+      ByteBuffer buffer = region.buffer.duplicate();
+      for (int i = 0; i < REGION_CHUNKS * REGION_CHUNKS; ++i) {
+        int chunkX = region.regionX * REGION_CHUNKS + (i & 31);
+        int chunkZ = region.regionZ * REGION_CHUNKS + (i >> 5);
+        int location = buffer.getInt(i * Integer.BYTES);
+        if (location != 0 && this.contains(chunkX, chunkZ)) {
+          // A broken location table entry skips the chunk, not the whole import.
+          long sectorOffset = (long) (location >>> 8) * SECTOR_SIZE;
+          int length = sectorOffset > buffer.limit() - Integer.BYTES ? 0 : buffer.getInt((int) sectorOffset);
+          if (length <= 1 || length > buffer.limit() - sectorOffset - Integer.BYTES) {
+            LimboAPI.getLogger().warn("Chunk {} {} was skipped, its data is empty or lies outside of the region file.", chunkX, chunkZ);
+            continue;
+          }
+
+          int offset = (int) sectorOffset;
+          readers.add(new ChunkReader(chunkX, chunkZ, buffer.get(offset + Integer.BYTES) & 0xFF, buffer.slice(offset + Integer.BYTES + 1, length - 1),
+              factory, blocks, simpleWorld, offsetY));
+        }
+      }
+    }
+
+    // Decompression, NBT parsing and section packing run on the pool, the chunks are attached on the calling thread.
+    ForkJoinPool pool = PalettedRegion.getPool(factory, parallel);
+    if (pool != null) {
+      List<ForkJoinTask<ChunkReader>> tasks = readers.stream().map(reader -> pool.submit(reader::read)).toList();
+      for (ForkJoinTask<ChunkReader> task : tasks) {
+        task.join().toWorld(world, offsetX, offsetY, offsetZ);
+      }
+    } else {
+      for (ChunkReader reader : readers) {
+        reader.read().toWorld(world, offsetX, offsetY, offsetZ);
+      }
+    }
+
+    world.fillSkyLight(lightLevel);
+  }
+
+  private boolean contains(int chunkX, int chunkZ) {
+    if (chunkX < this.minChunkX || chunkX > this.maxChunkX || chunkZ < this.minChunkZ || chunkZ > this.maxChunkZ) {
+      return false;
+    } else if (this.radiusSquared == -1) {
+      return true;
+    }
+
+    long distanceX = chunkX - (this.minChunkX + this.maxChunkX) / 2;
+    long distanceZ = chunkZ - (this.minChunkZ + this.maxChunkZ) / 2;
+    return distanceX * distanceX + distanceZ * distanceZ <= this.radiusSquared;
+  }
+
+  // Anvil palettes are packed the same way as the 1.16+ network ones, blocks use at least 4 bits per entry.
+  static int[] unpack(long[] data, int paletteSize, int minBits, int size) {
+    int[] indices = new int[size];
+    if (paletteSize > 1) {
+      BitStorage116 storage = new BitStorage116(Math.max(minBits, Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize - 1)), size, data);
+      for (int i = 0; i < size; ++i) {
+        indices[i] = storage.get(i);
+      }
+    }
+
+    return indices;
+  }
+
+  private record Region(int regionX, int regionZ, ByteBuffer buffer) {
+
+  }
+
+  private static final class ChunkReader {
+
+    private final int posX;
+    private final int posZ;
+    private final int compression;
+    private final ByteBuffer data;
+    private final LimboFactory factory;
+    private final Map<CompoundBinaryTag, VirtualBlock> blocks;
+    private final SimpleWorld simpleWorld;
+    private final int offsetY;
+
+    private final VirtualBlock[][] palettes = new VirtualBlock[16][];
+    private final int[][] indexes = new int[16][];
+    private final SimpleSection[] sections = new SimpleSection[16];
+    private final NibbleArray3D[] light = new NibbleArray3D[16];
+    private final VirtualBiome[][] biomes = new VirtualBiome[16][];
+    private final List<CompoundBinaryTag> blockEntities = new ArrayList<>();
+
+    private ChunkReader(int posX, int posZ, int compression, ByteBuffer data, LimboFactory factory, Map<CompoundBinaryTag, VirtualBlock> blocks,
+        SimpleWorld simpleWorld, int offsetY) {
+      this.posX = posX;
+      this.posZ = posZ;
+      this.compression = compression;
+      this.data = data;
+      this.factory = factory;
+      this.blocks = blocks;
+      this.simpleWorld = simpleWorld;
+      this.offsetY = offsetY;
+    }
+
+    private ChunkReader read() {
+      CompoundBinaryTag chunk = this.readNbt();
+      if (chunk == null) {
+        return this;
+      } else if (!chunk.keySet().contains("sections")) {
+        LimboAPI.getLogger().warn("Chunk {} {} was skipped, only 1.18+ chunks are supported.", this.posX, this.posZ);
+        return this;
+      }
+
+      for (BinaryTag sectionTag : chunk.getList("sections")) {
+        CompoundBinaryTag section = (CompoundBinaryTag) sectionTag;
+        // Sections that don't fit into the limbo world height are dropped.
+        int sectionIndex = section.getByte("Y") + (this.offsetY >> 4);
+        if (sectionIndex < 0 || (sectionIndex << 4 | this.offsetY & 15) + 15 >= 256) {
+          continue;
+        }
+
+        CompoundBinaryTag blockStates = section.getCompound("block_states");
+        ListBinaryTag paletteTag = blockStates.getList("palette");
+        // Empty sections are stored with a single air palette entry, they are kept null like the never written ones.
+        if (!paletteTag.isEmpty() && !(paletteTag.size() == 1 && paletteTag.getCompound(0).getString("Name").equals("minecraft:air"))) {
+          VirtualBlock[] palette = new VirtualBlock[paletteTag.size()];
+          for (int i = 0; i < palette.length; ++i) {
+            palette[i] = this.blocks.computeIfAbsent(paletteTag.getCompound(i), this::createBlock);
+          }
+
+          int[] sectionIndexes = unpack(blockStates.getLongArray("data"), palette.length, 4, SimpleChunk.MAX_BLOCKS_PER_SECTION);
+          if (this.simpleWorld == null) {
+            this.palettes[sectionIndex] = palette;
+            this.indexes[sectionIndex] = sectionIndexes;
+          } else {
+            this.sections[sectionIndex] = this.simpleWorld.createSection(palette, sectionIndexes);
+          }
+        }
+
+        byte[] blockLight = section.getByteArray("BlockLight");
+        if (blockLight.length == BLOCK_LIGHT_BYTES) {
+          this.light[sectionIndex] = new NibbleArray3D(blockLight);
+        }
+
+        CompoundBinaryTag biomesTag = section.getCompound("biomes");
+        ListBinaryTag biomePalette = biomesTag.getList("palette");
+        if (!biomePalette.isEmpty()) {
+          int[] biomeIndexes = unpack(biomesTag.getLongArray("data"), biomePalette.size(), 1, SECTION_BIOMES);
+          VirtualBiome[] sectionBiomes = new VirtualBiome[SECTION_BIOMES];
+          for (int i = 0; i < SECTION_BIOMES; ++i) {
+            Biome biome = Biome.of(biomePalette.getString(biomeIndexes[i]));
+            sectionBiomes[i] = biome == null ? Biome.PLAINS : biome;
+          }
+
+          this.biomes[sectionIndex] = sectionBiomes;
+        }
+      }
+
+      for (BinaryTag blockEntity : chunk.getList("block_entities")) {
+        this.blockEntities.add((CompoundBinaryTag) blockEntity);
+      }
+
+      return this;
+    }
+
+    private CompoundBinaryTag readNbt() {
+      byte[] bytes = new byte[this.data.remaining()];
+      this.data.get(bytes);
+      try (InputStream input = switch (this.compression) {
+        case 1 -> new GZIPInputStream(new ByteArrayInputStream(bytes));
+        case 2 -> new InflaterInputStream(new ByteArrayInputStream(bytes));
+        case 3 -> new ByteArrayInputStream(bytes);
+        default -> null;
+      }) {
+        if (input == null) {
+          // Chunks stored in the external .mcc files and the LZ4 compressed ones.
+          LimboAPI.getLogger().warn("Chunk {} {} was skipped, compression type {} is not supported.", this.posX, this.posZ, this.compression);
+          return null;
+        }
+
+        return BinaryTagIO.unlimitedReader().read(input);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private VirtualBlock createBlock(CompoundBinaryTag state) {
+      Map<String, String> properties = null;
+      if (state.keySet().contains("Properties")) {
+        properties = new HashMap<>();
+        CompoundBinaryTag propertiesTag = state.getCompound("Properties");
+        for (String key : propertiesTag.keySet()) {
+          properties.put(key, propertiesTag.getString(key));
+        }
+      }
+
+      return this.factory.createSimpleBlock(state.getString("Name"), properties);
+    }
+
+    private void toWorld(VirtualWorld world, int offsetX, int offsetY, int offsetZ) {
+      int chunkX = (this.posX << 4) + offsetX;
+      int chunkZ = (this.posZ << 4) + offsetZ;
+      if (this.simpleWorld != null) {
+        this.simpleWorld.modifyChunk(chunkX, chunkZ, chunk -> {
+          for (int i = 0; i < 16; ++i) {
+            if (this.sections[i] != null) {
+              chunk.setSection(i << 4, this.sections[i]);
+            }
+
+            if (this.light[i] != null) {
+              chunk.setBlockLight(i + 1, this.light[i]);
+            }
+          }
+        });
+      } else {
+        for (int i = 0; i < 16; ++i) {
+          if (this.palettes[i] != null) {
+            new PalettedRegion(this.palettes[i], 16, 16, 16, this.indexes[i]).toWorld(world, chunkX, i << 4 | offsetY & 15, chunkZ);
+          }
+
+          if (this.light[i] != null) {
+            for (int j = 0; j < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++j) {
+              byte level = (byte) this.light[i].get(j & 15, j >> 8, j >> 4 & 15);
+              world.setBlockLight(chunkX + (j & 15), (i << 4 | offsetY & 15) + (j >> 8), chunkZ + (j >> 4 & 15), level);
+            }
+          }
+        }
+      }
+
+      for (int i = 0; i < 16; ++i) {
+        if (this.biomes[i] != null) {
+          for (int j = 0; j < SECTION_BIOMES; ++j) {
+            world.setBiome3d(chunkX + ((j & 3) << 2), (i << 4 | offsetY & 15) + (j >> 4 << 2), chunkZ + ((j >> 2 & 3) << 2), this.biomes[i][j]);
+          }
+        }
+      }
+
+      for (CompoundBinaryTag blockEntity : this.blockEntities) {
+        int posY = blockEntity.getInt("y") + offsetY;
+        if (posY >= 0 && posY < 256) {
+          VirtualBlockEntity entity = this.factory.getBlockEntity(blockEntity.getString("id"));
+          world.setBlockEntity(blockEntity.getInt("x") + offsetX, posY, blockEntity.getInt("z") + offsetZ, blockEntity, entity);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.file;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import net.elytrium.limboapi.LimboAPI;
+import net.elytrium.limboapi.api.LimboFactory;
+import net.elytrium.limboapi.api.chunk.VirtualBiome;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.VirtualBlockEntity;
+import net.elytrium.limboapi.api.chunk.VirtualChunk;
+import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.api.chunk.data.BlockSection;
+import net.elytrium.limboapi.api.chunk.data.ChunkSnapshot;
+import net.elytrium.limboapi.api.chunk.data.LightSection;
+import net.elytrium.limboapi.api.chunk.util.CompactStorage;
+import net.elytrium.limboapi.api.file.WorldFile;
+import net.elytrium.limboapi.api.mcprotocollib.NibbleArray3D;
+import net.elytrium.limboapi.material.Biome;
+import net.elytrium.limboapi.mcprotocollib.BitStorage116;
+import net.elytrium.limboapi.protocol.data.BlockStorage19;
+import net.elytrium.limboapi.protocol.data.StorageUtils;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+import net.elytrium.limboapi.server.world.SimpleWorld;
+import net.elytrium.limboapi.server.world.chunk.SimpleBiomeStorage;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import net.elytrium.limboapi.server.world.chunk.SimpleLightSection;
+import net.elytrium.limboapi.server.world.chunk.SimpleSection;
+import net.kyori.adventure.nbt.BinaryTagIO;
+import net.kyori.adventure.nbt.CompoundBinaryTag;
+
+// LimboAPI world format, chunks are stored with their packed section palettes and are read from the file mapped into memory.
+//
+// Header: magic, format version, block state mapping hash, block table (flags, state id, namespaced id with properties),
+// biome table, chunk index (x, z, offset, length).
+// Chunk: section mask, sections (palette of the block table indexes, bits per entry, BitStorage116 longs),
+// the sections have the layout of the BlockStorage19 of 1.17 (4 to 8 bits per entry), so they are adopted without unpacking,
+// block light of 18 light sections (uniform level or -1 and the nibbles), biomes (one or 1024 biome table indexes), block entities.
+public class LimboWorldFile implements WorldFile {
+
+  private static final int MAGIC = 0x4C494D42;
+  private static final int FORMAT_VERSION = 3;
+  private static final int SECTIONS = 16;
+  private static final int LIGHT_SECTIONS = 18;
+  private static final int BIOMES = 1024;
+  private static final int BLOCK_LIGHT_BYTES = SimpleChunk.MAX_BLOCKS_PER_SECTION >> 1;
+
+  private static final int SOLID = 1;
+  private static final int AIR = 1 << 1;
+  private static final int MOTION_BLOCKING = 1 << 2;
+
+  private final ByteBuffer buffer;
+
+  public LimboWorldFile(ByteBuffer buffer) {
+    this.buffer = buffer.duplicate();
+    if (this.buffer.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Invalid limbo world file");
+    }
+
+    int version = this.buffer.getInt();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported limbo world file version " + version);
+    }
+  }
+
+  public static LimboWorldFile open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed.
+      return new LimboWorldFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel) {
+    this.toWorld(factory, world, offsetX, offsetY, offsetZ, lightLevel, false);
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel, boolean parallel) {
+    ByteBuffer buffer = this.buffer.duplicate();
+    // The state ids are used only if they were written with the same mapping, otherwise the states are resolved by their names.
+    boolean sameMapping = buffer.getInt() == SimpleBlock.getBlockStateMappingHash();
+    VirtualBlock[] blocks = new VirtualBlock[buffer.getInt()];
+    for (int i = 0; i < blocks.length; ++i) {
+      int flags = buffer.get();
+      short modernID = buffer.getShort();
+      String state = readString(buffer);
+      if (!sameMapping) {
+        VirtualBlock block = SimpleBlock.fromModernID(state);
+        state = block.getModernStringID();
+        modernID = block.getModernID();
+      }
+
+      blocks[i] = new SimpleBlock((flags & SOLID) != 0, (flags & AIR) != 0, (flags & MOTION_BLOCKING) != 0, state, modernID);
+    }
+
+    VirtualBiome[] biomes = new VirtualBiome[buffer.getInt()];
+    for (int i = 0; i < biomes.length; ++i) {
+      biomes[i] = getBiome(readString(buffer));
+    }
+
+    int[] index = new int[buffer.getInt() * 4];
+    buffer.asIntBuffer().get(index);
+    buffer.position(buffer.position() + index.length * Integer.BYTES);
+    int dataOffset = buffer.position();
+
+    // Sections are swapped in directly only if the chunk grid of the file matches the world one.
+    SimpleWorld simpleWorld = world instanceof SimpleWorld && (offsetX & 15) == 0 && offsetY == 0 && (offsetZ & 15) == 0 ? (SimpleWorld) world : null;
+    List<ChunkReader> readers = new ArrayList<>(index.length / 4);
+    for (int i = 0; i < index.length; i += 4) {
+      ByteBuffer record = buffer.slice(dataOffset + index[i + 2], index[i + 3]);
+      readers.add(new ChunkReader(index[i], index[i + 1], record, blocks, biomes, simpleWorld));
+    }
+
+    ForkJoinPool pool = PalettedRegion.getPool(factory, parallel);
+    if (pool != null) {
+      List<ForkJoinTask<ChunkReader>> tasks = readers.stream().map(reader -> pool.submit(reader::read)).toList();
+      for (ForkJoinTask<ChunkReader> task : tasks) {
+        task.join().toWorld(factory, world, offsetX, offsetY, offsetZ);
+      }
+    } else {
+      for (ChunkReader reader : readers) {
+        reader.read().toWorld(factory, world, offsetX, offsetY, offsetZ);
+      }
+    }
+
+    world.fillSkyLight(lightLevel);
+  }
+
+  public static void write(VirtualWorld world, Path file) throws IOException {
+    Object2IntOpenHashMap<VirtualBlock> blockIndexes = new Object2IntOpenHashMap<>();
+    blockIndexes.defaultReturnValue(-1);
+    List<VirtualBlock> blocks = new ArrayList<>();
+    Object2IntOpenHashMap<VirtualBiome> biomeIndexes = new Object2IntOpenHashMap<>();
+    biomeIndexes.defaultReturnValue(-1);
+    List<VirtualBiome> biomes = new ArrayList<>();
+
+    // Chunks are written first, as the tables are filled while writing them.
+    List<VirtualChunk> chunks = world.getChunks();
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream recordOutput = new DataOutputStream(records);
+    int[] index = new int[chunks.size() * 4];
+    for (int i = 0; i < chunks.size(); ++i) {
+      VirtualChunk chunk = chunks.get(i);
+      index[i * 4] = chunk.getPosX();
+      index[i * 4 + 1] = chunk.getPosZ();
+      index[i * 4 + 2] = recordOutput.size();
+      // Full snapshots would mark every section as shared, so the whole world would be copied on the next changes.
+      // The world must not be changed while it is written.
+      ChunkSnapshot snapshot = chunk instanceof SimpleChunk simpleChunk ? simpleChunk.getReadOnlyView() : chunk.getFullChunkSnapshot();
+      writeChunk(recordOutput, snapshot, blockIndexes, blocks, biomeIndexes, biomes);
+      index[i * 4 + 3] = recordOutput.size() - index[i * 4 + 2];
+    }
+
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(SimpleBlock.getBlockStateMappingHash());
+      output.writeInt(blocks.size());
+      for (VirtualBlock block : blocks) {
+        output.writeByte((block.isSolid() ? SOLID : 0) | (block.isAir() ? AIR : 0) | (block.isMotionBlocking() ? MOTION_BLOCKING : 0));
+        output.writeShort(block.getModernID());
+        writeString(output, SimpleBlock.getStateString(block));
+      }
+
+      output.writeInt(biomes.size());
+      for (VirtualBiome biome : biomes) {
+        writeString(output, biome.getName());
+      }
+
+      output.writeInt(chunks.size());
+      for (int value : index) {
+        output.writeInt(value);
+      }
+
+      records.writeTo(output);
+    }
+  }
+
+  private static void writeChunk(DataOutputStream output, ChunkSnapshot chunk, Object2IntOpenHashMap<VirtualBlock> blockIndexes, List<VirtualBlock> blocks,
+      Object2IntOpenHashMap<VirtualBiome> biomeIndexes, List<VirtualBiome> biomes) throws IOException {
+    BlockSection[] sections = chunk.getSections();
+    int sectionMask = 0;
+    for (int i = 0; i < SECTIONS; ++i) {
+      if (sections[i] != null) {
+        sectionMask |= 1 << i;
+      }
+    }
+
+    output.writeShort(sectionMask);
+    int[] sectionIndexes = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    Object2IntOpenHashMap<VirtualBlock> palette = new Object2IntOpenHashMap<>();
+    palette.defaultReturnValue(-1);
+    for (int i = 0; i < SECTIONS; ++i) {
+      BlockSection section = sections[i];
+      if (section == null) {
+        continue;
+      }
+
+      VirtualBlock[] paletteBlocks = null;
+      CompactStorage storage = null;
+      if (section instanceof SimpleSection simpleSection && simpleSection.getStorage() instanceof BlockStorage19 blockStorage) {
+        // The palette and the longs of the section storage are written as they are.
+        storage = blockStorage.getPaletteStorage();
+        paletteBlocks = storage == null || storage instanceof BitStorage116 ? blockStorage.getPalette() : null;
+        if (paletteBlocks != null && storage == null) {
+          paletteBlocks = new VirtualBlock[] {paletteBlocks[0]};
+        }
+      }
+
+      if (paletteBlocks == null) {
+        // Palette in the order of appearance, packed the same way as BlockStorage19 does it.
+        palette.clear();
+        List<VirtualBlock> blockList = new ArrayList<>();
+        for (int j = 0; j < sectionIndexes.length; ++j) {
+          VirtualBlock block = section.getBlockAt(j & 15, j >> 8, j >> 4 & 15);
+          int paletteIndex = palette.getInt(block);
+          if (paletteIndex == -1) {
+            paletteIndex = blockList.size();
+            blockList.add(block);
+            palette.put(block, paletteIndex);
+          }
+
+          sectionIndexes[j] = paletteIndex;
+        }
+
+        paletteBlocks = blockList.toArray(new VirtualBlock[0]);
+        storage = null;
+        if (paletteBlocks.length > 1) {
+          int bitsPerEntry = Integer.SIZE - Integer.numberOfLeadingZeros(paletteBlocks.length - 1);
+          // Wider palettes are direct in BlockStorage19, they are written with the minimal width and unpacked on read.
+          storage = new BitStorage116(bitsPerEntry > 8 ? bitsPerEntry : StorageUtils.fixBitsPerEntry(ProtocolVersion.MINECRAFT_1_17, bitsPerEntry),
+              SimpleChunk.MAX_BLOCKS_PER_SECTION);
+          for (int j = 0; j < sectionIndexes.length; ++j) {
+            storage.set(j, sectionIndexes[j]);
+          }
+        }
+      }
+
+      output.writeShort(paletteBlocks.length);
+      for (VirtualBlock block : paletteBlocks) {
+        int blockIndex = blockIndexes.getInt(block);
+        if (blockIndex == -1) {
+          blockIndex = blocks.size();
+          blocks.add(block);
+          blockIndexes.put(block, blockIndex);
+        }
+
+        output.writeInt(blockIndex);
+      }
+
+      // Zero bits per entry if the whole section is the first palette block.
+      output.writeByte(storage == null ? 0 : storage.getBitsPerEntry());
+      if (storage != null) {
+        for (long value : storage.getData()) {
+          output.writeLong(value);
+        }
+      }
+    }
+
+    LightSection[] light = chunk.getLight();
+    for (int i = 0; i < LIGHT_SECTIONS; ++i) {
+      NibbleArray3D blockLight = light[i] == null ? null : light[i].getBlockLight();
+      int level = blockLight == null ? 0 : getUniformLevel(blockLight);
+      output.writeByte(level);
+      if (level == -1) {
+        output.write(SimpleLightSection.getReadOnlyData(blockLight));
+      }
+    }
+
+    // getBiomes copies the whole biome array, so the biomes are read one by one.
+    VirtualBiome firstBiome = getBiome(chunk, 0);
+    boolean uniform = true;
+    for (int i = 1; i < BIOMES && uniform; ++i) {
+      uniform = getBiome(chunk, i) == firstBiome;
+    }
+
+    output.writeShort(uniform ? 1 : BIOMES);
+    for (int i = 0; i < (uniform ? 1 : BIOMES); ++i) {
+      VirtualBiome biome = getBiome(chunk, i);
+      int biomeIndex = biomeIndexes.getInt(biome);
+      if (biomeIndex == -1) {
+        biomeIndex = biomes.size();
+        biomes.add(biome);
+        biomeIndexes.put(biome, biomeIndex);
+      }
+
+      output.writeShort(biomeIndex);
+    }
+
+    List<VirtualBlockEntity.Entry> blockEntities = chunk.getBlockEntityEntries();
+    output.writeInt(blockEntities.size());
+    for (VirtualBlockEntity.Entry entry : blockEntities) {
+      output.writeInt(entry.getPosY());
+      output.writeByte((entry.getPosZ() & 15) << 4 | entry.getPosX() & 15);
+      writeString(output, entry.getBlockEntity().getModernID());
+      if (entry.getNbt() == null) {
+        output.writeInt(-1);
+      } else {
+        ByteArrayOutputStream nbt = new ByteArrayOutputStream();
+        BinaryTagIO.writer().write(entry.getNbt(), nbt);
+        output.writeInt(nbt.size());
+        nbt.writeTo(output);
+      }
+    }
+  }
+
+  private static int getUniformLevel(NibbleArray3D light) {
+    int level = SimpleLightSection.getUniformLevel(light);
+    if (level != -1) {
+      return level;
+    }
+
+    byte[] data = SimpleLightSection.getReadOnlyData(light);
+    for (byte value : data) {
+      if (value != data[0]) {
+        return -1;
+      }
+    }
+
+    return (data[0] & 15) == (data[0] >> 4 & 15) ? data[0] & 15 : -1;
+  }
+
+  // Same index order as the biome array of the chunk.
+  private static VirtualBiome getBiome(ChunkSnapshot chunk, int index) {
+    return chunk.getBiome((index & 3) << 2, index >> 4 << 2, (index >> 2 & 3) << 2);
+  }
+
+  private static VirtualBiome getBiome(String name) {
+    Biome biome = Biome.of(name);
+    if (biome == null) {
+      LimboAPI.getLogger().warn("Biome {} is not supported, it was replaced with {}.", name, Biome.PLAINS.getName());
+      return Biome.PLAINS;
+    }
+
+    return biome;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeShort(bytes.length);
+    output.write(bytes);
+  }
+
+  // Decodes one chunk record, may run on any thread. The decoded chunk is put into the world by toWorld.
+  private static final class ChunkReader {
+
+    private final int posX;
+    private final int posZ;
+    private final ByteBuffer record;
+    private final VirtualBlock[] blocks;
+    private final VirtualBiome[] biomes;
+    private final SimpleWorld simpleWorld;
+
+    private final VirtualBlock[][] palettes = new VirtualBlock[SECTIONS][];
+    private final int[][] indexes = new int[SECTIONS][];
+    private final SimpleSection[] sections = new SimpleSection[SECTIONS];
+    private final int[] lightLevels = new int[LIGHT_SECTIONS];
+    private final NibbleArray3D[] light = new NibbleArray3D[LIGHT_SECTIONS];
+    private final VirtualBiome[] chunkBiomes = new VirtualBiome[BIOMES];
+    private final List<BlockEntityData> blockEntities = new ArrayList<>();
+
+    private ChunkReader(int posX, int posZ, ByteBuffer record, VirtualBlock[] blocks, VirtualBiome[] biomes, SimpleWorld simpleWorld) {
+      this.posX = posX;
+      this.posZ = posZ;
+      this.record = record;
+      this.blocks = blocks;
+      this.biomes = biomes;
+      this.simpleWorld = simpleWorld;
+    }
+
+    private ChunkReader read() {
+      int sectionMask = this.record.getShort() & 0xFFFF;
+      for (int i = 0; i < SECTIONS; ++i) {
+        if ((sectionMask & 1 << i) == 0) {
+          continue;
+        }
+
+        VirtualBlock[] palette = new VirtualBlock[this.record.getShort() & 0xFFFF];
+        for (int j = 0; j < palette.length; ++j) {
+          palette[j] = this.blocks[this.record.getInt()];
+        }
+
+        int bitsPerEntry = this.record.get();
+        BitStorage116 storage = null;
+        if (bitsPerEntry != 0) {
+          storage = new BitStorage116(bitsPerEntry, SimpleChunk.MAX_BLOCKS_PER_SECTION);
+          long[] data = storage.getData();
+          this.record.asLongBuffer().get(data);
+          this.record.position(this.record.position() + data.length * Long.BYTES);
+        }
+
+        if (this.simpleWorld == null) {
+          int[] sectionIndexes = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+          if (storage != null) {
+            for (int j = 0; j < sectionIndexes.length; ++j) {
+              sectionIndexes[j] = storage.get(j);
+            }
+          }
+
+          this.palettes[i] = palette;
+          this.indexes[i] = sectionIndexes;
+        } else {
+          this.sections[i] = this.simpleWorld.createSection(palette, storage);
+        }
+      }
+
+      for (int i = 0; i < LIGHT_SECTIONS; ++i) {
+        this.lightLevels[i] = this.record.get();
+        if (this.lightLevels[i] == -1) {
+          byte[] data = new byte[BLOCK_LIGHT_BYTES];
+          this.record.get(data);
+          this.light[i] = new NibbleArray3D(data);
+        }
+      }
+
+      int biomeCount = this.record.getShort();
+      for (int i = 0; i < BIOMES; ++i) {
+        this.chunkBiomes[i] = i < biomeCount ? this.biomes[this.record.getShort()] : this.chunkBiomes[0];
+      }
+
+      for (int i = this.record.getInt(); i > 0; --i) {
+        int posY = this.record.getInt();
+        int posXZ = this.record.get() & 0xFF;
+        String id = readString(this.record);
+        int nbtLength = this.record.getInt();
+        CompoundBinaryTag nbt = null;
+        if (nbtLength != -1) {
+          byte[] data = new byte[nbtLength];
+          this.record.get(data);
+          try {
+            nbt = BinaryTagIO.unlimitedReader().read(new ByteArrayInputStream(data));
+          } catch (IOException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+
+        this.blockEntities.add(new BlockEntityData(posXZ & 15, posY, posXZ >> 4, id, nbt));
+      }
+
+      return this;
+    }
+
+    private void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ) {
+      int chunkX = (this.posX << 4) + offsetX;
+      int chunkZ = (this.posZ << 4) + offsetZ;
+      if (this.simpleWorld != null) {
+        this.simpleWorld.modifyChunk(chunkX, chunkZ, chunk -> {
+          for (int i = 0; i < SECTIONS; ++i) {
+            if (this.sections[i] != null) {
+              chunk.setSection(i << 4, this.sections[i]);
+            }
+          }
+
+          for (int i = 0; i < LIGHT_SECTIONS; ++i) {
+            if (this.light[i] == null) {
+              chunk.fillBlockLight(i, this.lightLevels[i]);
+            } else {
+              chunk.setBlockLight(i, this.light[i]);
+            }
+          }
+
+          SimpleBiomeStorage biomeStorage = new SimpleBiomeStorage(this.chunkBiomes[0]);
+          for (int i = 1; i < BIOMES; ++i) {
+            biomeStorage.set(i, this.chunkBiomes[i]);
+          }
+
+          chunk.setBiomes(biomeStorage);
+        });
+      } else {
+        for (int i = 0; i < SECTIONS; ++i) {
+          if (this.palettes[i] != null) {
+            new PalettedRegion(this.palettes[i], 16, 16, 16, this.indexes[i]).toWorld(world, chunkX, offsetY + (i << 4), chunkZ);
+          }
+        }
+
+        // Light sections below and above the world can't be reached through the VirtualWorld.
+        for (int i = 1; i < LIGHT_SECTIONS - 1; ++i) {
+          for (int j = 0; j < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++j) {
+            int level = this.light[i] == null ? this.lightLevels[i] : this.light[i].get(j & 15, j >> 8, j >> 4 & 15);
+            world.setBlockLight(chunkX + (j & 15), offsetY + (i - 1 << 4 | j >> 8), chunkZ + (j >> 4 & 15), (byte) level);
+          }
+        }
+
+        for (int i = 0; i < BIOMES; ++i) {
+          world.setBiome3d(chunkX + ((i & 3) << 2), offsetY + (i >> 4 << 2), chunkZ + ((i >> 2 & 3) << 2), this.chunkBiomes[i]);
+        }
+      }
+
+      for (BlockEntityData blockEntity : this.blockEntities) {
+        world.setBlockEntity(
+            chunkX + blockEntity.posX, offsetY + blockEntity.posY, chunkZ + blockEntity.posZ, blockEntity.nbt, factory.getBlockEntity(blockEntity.id)
+        );
+      }
+    }
+  }
+
+  private record BlockEntityData(int posX, int posY, int posZ, String id, CompoundBinaryTag nbt) {
+
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.file;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import net.elytrium.limboapi.LimboAPI;
+import net.elytrium.limboapi.api.LimboFactory;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+import net.elytrium.limboapi.server.world.SimpleWorld;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import net.elytrium.limboapi.server.world.chunk.SimpleSection;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// Box of palette indices ordered by y, then z, then x, written into the world section by section.
+public class PalettedRegion {
+
+  // Index of the positions that are left untouched.
+  public static final int SKIP = -1;
+
+  private final VirtualBlock[] palette;
+  private final int sizeX;
+  private final int sizeY;
+  private final int sizeZ;
+  private final int[] indices;
+
+  public PalettedRegion(VirtualBlock[] palette, int sizeX, int sizeY, int sizeZ, int[] indices) {
+    this.palette = palette.clone();
+    for (int i = 0; i < this.palette.length; ++i) {
+      if (this.palette[i] == null) {
+        this.palette[i] = SimpleBlock.AIR;
+      }
+    }
+
+    this.sizeX = sizeX;
+    this.sizeY = sizeY;
+    this.sizeZ = sizeZ;
+    this.indices = indices;
+  }
+
+  public void toWorld(VirtualWorld world, int offsetX, int offsetY, int offsetZ) {
+    this.toWorld(world, offsetX, offsetY, offsetZ, null);
+  }
+
+  // With the pool the fully covered sections are packed on it and attached to the world afterwards.
+  public void toWorld(VirtualWorld world, int offsetX, int offsetY, int offsetZ, @Nullable ForkJoinPool pool) {
+    int toX = offsetX + this.sizeX - 1;
+    int toY = offsetY + this.sizeY - 1;
+    int toZ = offsetZ + this.sizeZ - 1;
+    int[] section = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    List<SectionTask> tasks = new ArrayList<>();
+    for (int chunkX = offsetX >> 4; chunkX <= toX >> 4; ++chunkX) {
+      for (int chunkZ = offsetZ >> 4; chunkZ <= toZ >> 4; ++chunkZ) {
+        for (int sectionY = offsetY >> 4; sectionY <= toY >> 4; ++sectionY) {
+          SectionTask task = new SectionTask(
+              chunkX, sectionY, chunkZ,
+              Math.max(offsetX, chunkX << 4) - offsetX, Math.max(offsetY, sectionY << 4) - offsetY, Math.max(offsetZ, chunkZ << 4) - offsetZ,
+              Math.min(toX, chunkX << 4 | 15) - offsetX, Math.min(toY, sectionY << 4 | 15) - offsetY, Math.min(toZ, chunkZ << 4 | 15) - offsetZ
+          );
+
+          // Sections that are fully covered get their palette and storage built at once.
+          if (world instanceof SimpleWorld && task.isFull()) {
+            if (pool != null) {
+              tasks.add(task);
+              continue;
+            } else if (this.copySection(section, task)) {
+              SimpleWorld simpleWorld = (SimpleWorld) world;
+              simpleWorld.setSection(chunkX, sectionY, chunkZ, simpleWorld.createSection(this.palette, section));
+              continue;
+            }
+          }
+
+          this.writeBlocks(world, offsetX, offsetY, offsetZ, task);
+        }
+      }
+    }
+
+    if (!tasks.isEmpty()) {
+      SimpleWorld simpleWorld = (SimpleWorld) world;
+      List<ForkJoinTask<SimpleSection>> sections = tasks.stream().map(task -> pool.submit(() -> {
+        int[] indices = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+        return this.copySection(indices, task) ? simpleWorld.createSection(this.palette, indices) : null;
+      })).toList();
+
+      for (int i = 0; i < tasks.size(); ++i) {
+        SectionTask task = tasks.get(i);
+        SimpleSection created = sections.get(i).join();
+        if (created == null) {
+          this.writeBlocks(world, offsetX, offsetY, offsetZ, task);
+        } else {
+          simpleWorld.setSection(task.chunkX, task.sectionY, task.chunkZ, created);
+        }
+      }
+    }
+  }
+
+  // World files run their parallel work on the shared chunk preparation pool, its size is set by chunk-preparation-threads.
+  // Null for the work on the calling thread.
+  @Nullable
+  public static ForkJoinPool getPool(LimboFactory factory, boolean parallel) {
+    if (!parallel) {
+      return null;
+    }
+
+    return factory instanceof LimboAPI plugin ? plugin.getChunkPreparationPool() : ForkJoinPool.commonPool();
+  }
+
+  private void writeBlocks(VirtualWorld world, int offsetX, int offsetY, int offsetZ, SectionTask task) {
+    for (int posY = task.fromY; posY <= task.toY; ++posY) {
+      for (int posZ = task.fromZ; posZ <= task.toZ; ++posZ) {
+        int index = (posY * this.sizeZ + posZ) * this.sizeX;
+        for (int posX = task.fromX; posX <= task.toX; ++posX) {
+          int paletteIndex = this.indices[index + posX];
+          if (paletteIndex != SKIP) {
+            world.setBlock(offsetX + posX, offsetY + posY, offsetZ + posZ, this.palette[paletteIndex]);
+          }
+        }
+      }
+    }
+  }
+
+  private boolean copySection(int[] section, SectionTask task) {
+    for (int posY = 0; posY < 16; ++posY) {
+      for (int posZ = 0; posZ < 16; ++posZ) {
+        int index = ((task.fromY + posY) * this.sizeZ + task.fromZ + posZ) * this.sizeX + task.fromX;
+        for (int posX = 0; posX < 16; ++posX) {
+          int paletteIndex = this.indices[index + posX];
+          if (paletteIndex == SKIP) {
+            return false;
+          }
+
+          section[posY << 8 | posZ << 4 | posX] = paletteIndex;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  // Part of the region inside of a section, the "from" and "to" positions are relative to the region.
+  private record SectionTask(int chunkX, int sectionY, int chunkZ, int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+
+    // Sections outside of the chunk height are written block by block, so the world decides what to do with them.
+    private boolean isFull() {
+      return this.sectionY >= 0 && this.sectionY < 16 && this.toX - this.fromX == 15 && this.toY - this.fromY == 15 && this.toZ - this.fromZ == 15;
+    }
+  }
+}
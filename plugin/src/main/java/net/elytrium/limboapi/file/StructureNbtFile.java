@@ -17,6 +17,7 @@
 
 package net.elytrium.limboapi.file;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import net.elytrium.limboapi.api.LimboFactory;
@@ -31,14 +32,27 @@ public class StructureNbtFile implements WorldFile {
 
   private final ListBinaryTag blocks;
   private final ListBinaryTag palette;
+  private final int sizeX;
+  private final int sizeY;
+  private final int sizeZ;
 
   public StructureNbtFile(CompoundBinaryTag tag) {
     this.blocks = tag.getList("blocks");
     this.palette = tag.getList("palette");
+
+    ListBinaryTag size = tag.getList("size");
+    this.sizeX = size.getInt(0);
+    this.sizeY = size.getInt(1);
+    this.sizeZ = size.getInt(2);
   }
 
   @Override
   public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel) {
+    this.toWorld(factory, world, offsetX, offsetY, offsetZ, lightLevel, false);
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel, boolean parallel) {
     VirtualBlock[] palettedBlocks = new VirtualBlock[this.palette.size()];
     for (int i = 0; i < this.palette.size(); ++i) {
       CompoundBinaryTag map = this.palette.getCompound(i);
@@ -55,6 +69,17 @@ public class StructureNbtFile implements WorldFile {
       palettedBlocks[i] = factory.createSimpleBlock(map.getString("Name"), propertiesMap);
     }
 
+    // Positions without a block (structure voids) keep the blocks of the world.
+    int[] indices = new int[this.sizeX * this.sizeY * this.sizeZ];
+    Arrays.fill(indices, PalettedRegion.SKIP);
+    for (BinaryTag binaryTag : this.blocks) {
+      CompoundBinaryTag blockMap = (CompoundBinaryTag) binaryTag;
+      ListBinaryTag posTag = blockMap.getList("pos");
+      indices[(posTag.getInt(1) * this.sizeZ + posTag.getInt(2)) * this.sizeX + posTag.getInt(0)] = blockMap.getInt("state");
+    }
+
+    new PalettedRegion(palettedBlocks, this.sizeX, this.sizeY, this.sizeZ, indices)
+        .toWorld(world, offsetX, offsetY, offsetZ, PalettedRegion.getPool(factory, parallel));
     for (BinaryTag binaryTag : this.blocks) {
       CompoundBinaryTag blockMap = (CompoundBinaryTag) binaryTag;
       ListBinaryTag posTag = blockMap.getList("pos");
@@ -62,7 +87,6 @@ public class StructureNbtFile implements WorldFile {
       int x = offsetX + posTag.getInt(0);
       int y = offsetY + posTag.getInt(1);
       int z = offsetZ + posTag.getInt(2);
-      world.setBlock(x, y, z, block);
 
       CompoundBinaryTag blockEntityNbt = blockMap.getCompound("nbt");
       if (!blockEntityNbt.keySet().isEmpty()) {
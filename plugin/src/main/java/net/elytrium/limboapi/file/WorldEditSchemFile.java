@@ -80,17 +80,16 @@ public class WorldEditSchemFile implements WorldFile {
 
   @Override
   public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel) {
+    this.toWorld(factory, world, offsetX, offsetY, offsetZ, lightLevel, false);
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel, boolean parallel) {
     VirtualBlock[] palettedBlocks = new VirtualBlock[this.palette.keySet().size()];
     this.palette.forEach((entry) -> palettedBlocks[((IntBinaryTag) entry.getValue()).value()] = factory.createSimpleBlock(entry.getKey()));
 
-    for (int posX = 0; posX < this.width; ++posX) {
-      for (int posY = 0; posY < this.height; ++posY) {
-        for (int posZ = 0; posZ < this.length; ++posZ) {
-          int index = (posY * this.length + posZ) * this.width + posX;
-          world.setBlock(posX + offsetX, posY + offsetY, posZ + offsetZ, palettedBlocks[this.blocks[index]]);
-        }
-      }
-    }
+    new PalettedRegion(palettedBlocks, this.width, this.height, this.length, this.blocks)
+        .toWorld(world, offsetX, offsetY, offsetZ, PalettedRegion.getPool(factory, parallel));
 
     for (BinaryTag blockEntity : this.blockEntities) {
       CompoundBinaryTag blockEntityData = (CompoundBinaryTag) blockEntity;
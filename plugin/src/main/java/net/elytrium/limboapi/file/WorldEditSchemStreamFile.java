@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import net.elytrium.limboapi.api.LimboFactory;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.api.file.WorldFile;
+import net.kyori.adventure.nbt.BinaryTag;
+import net.kyori.adventure.nbt.BinaryTagTypes;
+import net.kyori.adventure.nbt.CompoundBinaryTag;
+import net.kyori.adventure.nbt.IntBinaryTag;
+import net.kyori.adventure.nbt.ListBinaryTag;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// Reads the sponge schematic (v2 and v3) from the file on every toWorld call without building the whole NBT tree,
+// the block data is decoded into the world one section layer at a time.
+public class WorldEditSchemStreamFile implements WorldFile {
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private final Path file;
+
+  // The header is checked here so that a broken file fails on open like it did with the NBT tree reader.
+  public WorldEditSchemStreamFile(Path file) throws IOException {
+    this.file = file;
+    try (DataInputStream input = open(file)) {
+      if (!isSchematic(input)) {
+        throw new IllegalArgumentException("Invalid worldedit file format. Please open an issue on GitHub.");
+      }
+    }
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel) {
+    this.toWorld(factory, world, offsetX, offsetY, offsetZ, lightLevel, false);
+  }
+
+  @Override
+  public void toWorld(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, int lightLevel, boolean parallel) {
+    try (DataInputStream input = open(this.file)) {
+      readRootName(input);
+      new Reader(factory, world, offsetX, offsetY, offsetZ, PalettedRegion.getPool(factory, parallel)).read(input);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    world.fillSkyLight(lightLevel);
+  }
+
+  private static DataInputStream open(Path file) throws IOException {
+    return new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+  }
+
+  private static void readRootName(DataInputStream input) throws IOException {
+    if (input.readByte() != BinaryTagTypes.COMPOUND.id()) {
+      throw new IOException("Root tag is not a compound");
+    }
+
+    input.skipNBytes(input.readUnsignedShort());
+  }
+
+  // v2 keeps the Width in the root compound, v3 has the Schematic compound with Blocks inside, same checks as WorldEditSchemFile.
+  private static boolean isSchematic(DataInputStream input) throws IOException {
+    readRootName(input);
+    for (byte type = input.readByte(); type != BinaryTagTypes.END.id(); type = input.readByte()) {
+      String name = input.readUTF();
+      if (type == BinaryTagTypes.SHORT.id() && name.equals("Width")) {
+        return true;
+      } else if (type == BinaryTagTypes.COMPOUND.id() && name.equals("Schematic")) {
+        for (byte entryType = input.readByte(); entryType != BinaryTagTypes.END.id(); entryType = input.readByte()) {
+          if (input.readUTF().equals("Blocks") && entryType == BinaryTagTypes.COMPOUND.id()) {
+            return true;
+          }
+
+          skip(input, entryType);
+        }
+      } else {
+        skip(input, type);
+      }
+    }
+
+    return false;
+  }
+
+  private static void skip(DataInputStream input, byte type) throws IOException {
+    switch (type) {
+      case 1 -> input.skipNBytes(Byte.BYTES);
+      case 2 -> input.skipNBytes(Short.BYTES);
+      case 3, 5 -> input.skipNBytes(Integer.BYTES);
+      case 4, 6 -> input.skipNBytes(Long.BYTES);
+      case 7 -> input.skipNBytes(input.readInt());
+      case 8 -> input.skipNBytes(input.readUnsignedShort());
+      case 9 -> {
+        byte elementType = input.readByte();
+        for (int i = input.readInt(); i > 0; --i) {
+          skip(input, elementType);
+        }
+      }
+      case 10 -> {
+        for (byte entryType = input.readByte(); entryType != BinaryTagTypes.END.id(); entryType = input.readByte()) {
+          input.skipNBytes(input.readUnsignedShort());
+          skip(input, entryType);
+        }
+      }
+      case 11 -> input.skipNBytes((long) input.readInt() * Integer.BYTES);
+      case 12 -> input.skipNBytes((long) input.readInt() * Long.BYTES);
+      default -> throw new IllegalArgumentException("Unknown NBT tag type " + type);
+    }
+  }
+
+  private static final class Reader {
+
+    private final LimboFactory factory;
+    private final VirtualWorld world;
+    private final int offsetX;
+    private final int offsetY;
+    private final int offsetZ;
+    @Nullable
+    private final ForkJoinPool pool;
+
+    private int width = -1;
+    private int height = -1;
+    private int length = -1;
+    private VirtualBlock[] palette;
+    private ListBinaryTag blockEntities = ListBinaryTag.empty();
+    private boolean blocksRead;
+    // Block data that came before the palette or the size, rare as WorldEdit writes it after them.
+    private byte[] pendingBlocks;
+    private int remainingBytes;
+
+    private Reader(LimboFactory factory, VirtualWorld world, int offsetX, int offsetY, int offsetZ, @Nullable ForkJoinPool pool) {
+      this.factory = factory;
+      this.world = world;
+      this.offsetX = offsetX;
+      this.offsetY = offsetY;
+      this.offsetZ = offsetZ;
+      this.pool = pool;
+    }
+
+    private void read(DataInputStream input) throws IOException {
+      this.readCompound(input, Scope.ROOT);
+      if (this.width == -1 || this.height == -1 || this.length == -1 || this.palette == null || !this.blocksRead && this.pendingBlocks == null) {
+        throw new IllegalArgumentException("Invalid worldedit file format. Please open an issue on GitHub.");
+      }
+
+      if (this.pendingBlocks != null) {
+        this.remainingBytes = this.pendingBlocks.length;
+        this.readBlocks(new DataInputStream(new ByteArrayInputStream(this.pendingBlocks)));
+      }
+
+      for (BinaryTag blockEntity : this.blockEntities) {
+        CompoundBinaryTag blockEntityData = (CompoundBinaryTag) blockEntity;
+        int[] posTag = blockEntityData.getIntArray("Pos");
+        this.world.setBlockEntity(
+            this.offsetX + posTag[0],
+            this.offsetY + posTag[1],
+            this.offsetZ + posTag[2],
+            blockEntityData,
+            this.factory.getBlockEntity(blockEntityData.getString("Id")));
+      }
+    }
+
+    // v2 keeps everything in the root compound, v3 moves it into Schematic and the blocks into Schematic.Blocks,
+    // so the tags are only matched in the compound their version puts them in.
+    private void readCompound(DataInputStream input, Scope scope) throws IOException {
+      for (byte type = input.readByte(); type != BinaryTagTypes.END.id(); type = input.readByte()) {
+        String name = input.readUTF();
+        if (type == BinaryTagTypes.SHORT.id() && scope != Scope.BLOCKS && (name.equals("Width") || name.equals("Height") || name.equals("Length"))) {
+          int value = input.readUnsignedShort();
+          switch (name) {
+            case "Width" -> this.width = value;
+            case "Height" -> this.height = value;
+            default -> this.length = value;
+          }
+        } else if (type == BinaryTagTypes.COMPOUND.id() && scope == Scope.ROOT && name.equals("Schematic")) {
+          this.readCompound(input, Scope.SCHEMATIC);
+        } else if (type == BinaryTagTypes.COMPOUND.id() && scope == Scope.SCHEMATIC && name.equals("Blocks")) {
+          this.readCompound(input, Scope.BLOCKS);
+        } else if (type == BinaryTagTypes.COMPOUND.id() && scope != Scope.SCHEMATIC && name.equals("Palette")) {
+          this.readPalette(BinaryTagTypes.COMPOUND.read(input));
+        } else if (type == BinaryTagTypes.BYTE_ARRAY.id()
+            && (scope == Scope.ROOT && name.equals("BlockData") || scope == Scope.BLOCKS && name.equals("Data"))) {
+          this.remainingBytes = input.readInt();
+          if (this.width == -1 || this.height == -1 || this.length == -1 || this.palette == null) {
+            this.pendingBlocks = new byte[this.remainingBytes];
+            input.readFully(this.pendingBlocks);
+          } else {
+            this.readBlocks(input);
+            this.blocksRead = true;
+          }
+        } else if (type == BinaryTagTypes.LIST.id() && scope != Scope.SCHEMATIC && name.equals("BlockEntities")) {
+          this.blockEntities = BinaryTagTypes.LIST.read(input);
+        } else {
+          skip(input, type);
+        }
+      }
+    }
+
+    private void readPalette(CompoundBinaryTag paletteTag) {
+      this.palette = new VirtualBlock[paletteTag.keySet().size()];
+      paletteTag.forEach((entry) -> this.palette[((IntBinaryTag) entry.getValue()).value()] = this.factory.createSimpleBlock(entry.getKey()));
+    }
+
+    // The data is ordered by y, then z, then x. The layers are buffered until the top of the target section.
+    private void readBlocks(DataInputStream input) throws IOException {
+      int layerSize = Math.multiplyExact(this.width, this.length);
+      int[] layers = new int[Math.multiplyExact(layerSize, Math.min(this.height, 16))];
+      int fromY = 0;
+      for (int posY = 0; posY < this.height; ++posY) {
+        int offset = (posY - fromY) * layerSize;
+        for (int i = 0; i < layerSize; ++i) {
+          layers[offset + i] = this.readVarInt(input);
+        }
+
+        if ((this.offsetY + posY & 15) == 15 || posY == this.height - 1) {
+          new PalettedRegion(this.palette, this.width, posY - fromY + 1, this.length, layers)
+              .toWorld(this.world, this.offsetX, this.offsetY + fromY, this.offsetZ, this.pool);
+          fromY = posY + 1;
+        }
+      }
+
+      input.skipNBytes(this.remainingBytes);
+    }
+
+    private int readVarInt(DataInputStream input) throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        byte read = input.readByte();
+        --this.remainingBytes;
+        value |= (read & 0x7F) << shift;
+        if ((read & 0x80) == 0) {
+          return value;
+        }
+      }
+
+      throw new IllegalArgumentException("VarInt is too big");
+    }
+  }
+
+  private enum Scope {
+    ROOT,
+    SCHEMATIC,
+    BLOCKS
+  }
+}
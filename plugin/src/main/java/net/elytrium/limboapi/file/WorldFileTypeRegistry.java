@@ -19,6 +19,7 @@ package net.elytrium.limboapi.file;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.EnumMap;
 import java.util.function.Function;
@@ -29,12 +30,19 @@ import net.kyori.adventure.nbt.CompoundBinaryTag;
 
 public enum WorldFileTypeRegistry {
   SCHEMATIC(BuiltInWorldFileType.SCHEMATIC, MCEditSchematicFile::new),
-  WORLDEDIT_SCHEM(BuiltInWorldFileType.WORLDEDIT_SCHEM, WorldEditSchemFile::new),
-  STRUCTURE(BuiltInWorldFileType.STRUCTURE, StructureNbtFile::new);
+  // Files are streamed on toWorld instead of being read into the NBT tree.
+  WORLDEDIT_SCHEM(BuiltInWorldFileType.WORLDEDIT_SCHEM, WorldEditSchemFile::new, WorldEditSchemStreamFile::new),
+  STRUCTURE(BuiltInWorldFileType.STRUCTURE, StructureNbtFile::new),
+  // Binary format, files are mapped into memory.
+  LIMBO_WORLD(BuiltInWorldFileType.LIMBO_WORLD, null, LimboWorldFile::open, LimboWorldFile::new),
+  // Whole region file, use LimboFactory#openAnvilWorldFile to read only a part of the world.
+  ANVIL_REGION(BuiltInWorldFileType.ANVIL_REGION, null, AnvilWorldFile::open, AnvilWorldFile::new);
 
   private static final EnumMap<BuiltInWorldFileType, WorldFileTypeRegistry> API_TYPE_MAP = new EnumMap<>(BuiltInWorldFileType.class);
   private final BuiltInWorldFileType apiType;
   private final Function<CompoundBinaryTag, WorldFile> worldFileFunction;
+  private final PathFunction pathFunction;
+  private final Function<ByteBuffer, WorldFile> bufferFunction;
 
   static {
     for (WorldFileTypeRegistry pluginType : WorldFileTypeRegistry.values()) {
@@ -43,8 +51,19 @@ public enum WorldFileTypeRegistry {
   }
 
   WorldFileTypeRegistry(BuiltInWorldFileType apiType, Function<CompoundBinaryTag, WorldFile> worldFileFunction) {
+    this(apiType, worldFileFunction, null);
+  }
+
+  WorldFileTypeRegistry(BuiltInWorldFileType apiType, Function<CompoundBinaryTag, WorldFile> worldFileFunction, PathFunction pathFunction) {
+    this(apiType, worldFileFunction, pathFunction, null);
+  }
+
+  WorldFileTypeRegistry(BuiltInWorldFileType apiType, Function<CompoundBinaryTag, WorldFile> worldFileFunction, PathFunction pathFunction,
+      Function<ByteBuffer, WorldFile> bufferFunction) {
     this.apiType = apiType;
     this.worldFileFunction = worldFileFunction;
+    this.pathFunction = pathFunction;
+    this.bufferFunction = bufferFunction;
   }
 
   public static WorldFileTypeRegistry fromApiType(BuiltInWorldFileType apiType) {
@@ -64,14 +83,31 @@ public enum WorldFileTypeRegistry {
   }
 
   public WorldFile fromNbt(Path file) throws IOException {
+    if (this.pathFunction != null) {
+      return this.pathFunction.apply(file);
+    }
+
     return this.fromNbt(BinaryTagIO.unlimitedReader().read(file, BinaryTagIO.Compression.GZIP));
   }
 
   public WorldFile fromNbt(InputStream stream) throws IOException {
+    if (this.bufferFunction != null) {
+      return this.bufferFunction.apply(ByteBuffer.wrap(stream.readAllBytes()));
+    }
+
     return this.fromNbt(BinaryTagIO.unlimitedReader().read(stream, BinaryTagIO.Compression.GZIP));
   }
 
   public WorldFile fromNbt(CompoundBinaryTag tag) {
+    if (this.worldFileFunction == null) {
+      throw new IllegalArgumentException(this.apiType + " is not an NBT format");
+    }
+
     return this.worldFileFunction.apply(tag);
   }
+
+  private interface PathFunction {
+
+    WorldFile apply(Path file) throws IOException;
+  }
 }
@@ -20,6 +20,8 @@ package net.elytrium.limboapi.material;
 import com.velocitypowered.api.network.ProtocolVersion;
 import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 import net.elytrium.limboapi.api.chunk.BuiltInBiome;
 import net.elytrium.limboapi.api.chunk.VirtualBiome;
@@ -91,6 +93,7 @@ public enum Biome implements VirtualBiome {
   );
 
   private static final EnumMap<BuiltInBiome, Biome> BUILT_IN_BIOME_MAP = new EnumMap<>(BuiltInBiome.class);
+  private static final Map<String, Biome> NAME_BIOME_MAP = new HashMap<>();
 
   private final BuiltInBiome index;
   private final String name;
@@ -129,6 +132,7 @@ public enum Biome implements VirtualBiome {
   static {
     for (Biome biome : Biome.values()) {
       BUILT_IN_BIOME_MAP.put(biome.index, biome);
+      NAME_BIOME_MAP.put(biome.name, biome);
     }
   }
 
@@ -136,6 +140,11 @@ public enum Biome implements VirtualBiome {
     return BUILT_IN_BIOME_MAP.get(index);
   }
 
+  @Nullable
+  public static Biome of(String name) {
+    return NAME_BIOME_MAP.get(name);
+  }
+
   public static CompoundBinaryTag getRegistry(ProtocolVersion version) {
     return CompoundBinaryTag.builder()
         .putString("type", "minecraft:worldgen/biome")
@@ -50,6 +50,7 @@ import net.elytrium.limboapi.protocol.packets.s2c.ChunkDataPacket;
 import net.elytrium.limboapi.protocol.packets.s2c.ChunkUnloadPacket;
 import net.elytrium.limboapi.protocol.packets.s2c.DefaultSpawnPositionPacket;
 import net.elytrium.limboapi.protocol.packets.s2c.MapDataPacket;
+import net.elytrium.limboapi.protocol.packets.s2c.MultiBlockChangePacket;
 import net.elytrium.limboapi.protocol.packets.s2c.PlayerAbilitiesPacket;
 import net.elytrium.limboapi.protocol.packets.s2c.PositionRotationPacket;
 import net.elytrium.limboapi.protocol.packets.s2c.SetExperiencePacket;
@@ -242,6 +243,27 @@ public class LimboProtocol {
         createMapping(0x21, ProtocolVersion.MINECRAFT_1_21_5, true),
         createMapping(0x25, ProtocolVersion.MINECRAFT_1_21_9, true)
     );
+    register(LIMBO_STATE_REGISTRY, PacketDirection.CLIENTBOUND,
+        MultiBlockChangePacket.class, MultiBlockChangePacket::new,
+        createMapping(0x22, ProtocolVersion.MINECRAFT_1_7_2, true),
+        createMapping(0x10, ProtocolVersion.MINECRAFT_1_9, true),
+        createMapping(0x0F, ProtocolVersion.MINECRAFT_1_13, true),
+        createMapping(0x10, ProtocolVersion.MINECRAFT_1_15, true),
+        createMapping(0x0F, ProtocolVersion.MINECRAFT_1_16, true),
+        createMapping(0x3B, ProtocolVersion.MINECRAFT_1_16_2, true),
+        createMapping(0x3F, ProtocolVersion.MINECRAFT_1_17, true),
+        createMapping(0x3D, ProtocolVersion.MINECRAFT_1_19, true),
+        createMapping(0x40, ProtocolVersion.MINECRAFT_1_19_1, true),
+        createMapping(0x3F, ProtocolVersion.MINECRAFT_1_19_3, true),
+        createMapping(0x43, ProtocolVersion.MINECRAFT_1_19_4, true),
+        createMapping(0x45, ProtocolVersion.MINECRAFT_1_20_2, true),
+        createMapping(0x47, ProtocolVersion.MINECRAFT_1_20_3, true),
+        createMapping(0x49, ProtocolVersion.MINECRAFT_1_20_5, true),
+        createMapping(0x4E, ProtocolVersion.MINECRAFT_1_21_2, true),
+        createMapping(0x4D, ProtocolVersion.MINECRAFT_1_21_5, true),
+        createMapping(0x52, ProtocolVersion.MINECRAFT_1_21_9, true),
+        createMapping(0x54, ProtocolVersion.MINECRAFT_26_1, true)
+    );
     register(LIMBO_STATE_REGISTRY, PacketDirection.CLIENTBOUND,
         DefaultSpawnPositionPacket.class, DefaultSpawnPositionPacket::new,
         createMapping(0x05, ProtocolVersion.MINECRAFT_1_7_2, true),
@@ -21,6 +21,7 @@ import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import io.netty.buffer.ByteBuf;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,34 +38,55 @@ public class BiomeStorage118 {
 
   private List<VirtualBiome> palette = new ArrayList<>();
   private Map<Integer, VirtualBiome> rawToBiome = new HashMap<>();
+  // Null while the whole section is the first palette biome.
   private CompactStorage storage;
+  // Amount of biomes per palette index, null with the direct palette.
+  private int[] counts;
 
   public BiomeStorage118(ProtocolVersion version) {
     this.version = version;
 
-    for (Biome biome : Biome.values()) {
-      this.palette.add(biome);
-      this.rawToBiome.put(biome.getID(), biome);
-    }
-
-    this.storage = new BitStorage116(3, SimpleChunk.MAX_BIOMES_PER_SECTION);
+    this.palette.add(Biome.PLAINS);
+    this.rawToBiome.put(Biome.PLAINS.getID(), Biome.PLAINS);
   }
 
-  private BiomeStorage118(ProtocolVersion version, List<VirtualBiome> palette, Map<Integer, VirtualBiome> rawToBiome, CompactStorage storage) {
+  private BiomeStorage118(ProtocolVersion version, List<VirtualBiome> palette, Map<Integer, VirtualBiome> rawToBiome,
+      CompactStorage storage, int[] counts) {
     this.version = version;
     this.palette = palette;
     this.rawToBiome = rawToBiome;
     this.storage = storage;
+    this.counts = counts;
   }
 
   public void set(int posX, int posY, int posZ, @NonNull VirtualBiome biome) {
-    int id = this.getIndex(biome);
-    this.storage.set(index(posX, posY, posZ), id);
+    this.set(index(posX, posY, posZ), biome);
   }
 
   public void set(int index, @NonNull VirtualBiome biome) {
+    if (this.storage == null) {
+      if (this.palette.get(0).equals(biome)) {
+        return;
+      }
+
+      this.storage = new BitStorage116(3, SimpleChunk.MAX_BIOMES_PER_SECTION);
+      this.counts = new int[1 << 3];
+      this.counts[0] = SimpleChunk.MAX_BIOMES_PER_SECTION;
+    }
+
     int id = this.getIndex(biome);
-    this.storage.set(index, id);
+    if (this.counts == null) {
+      this.storage.set(index, id);
+    } else {
+      int previousID = this.storage.get(index);
+      if (previousID != id) {
+        this.storage.set(index, id);
+        --this.counts[previousID];
+        if (++this.counts[id] == SimpleChunk.MAX_BIOMES_PER_SECTION) {
+          this.setSingleValue(biome);
+        }
+      }
+    }
   }
 
   @NonNull
@@ -73,6 +95,10 @@ public class BiomeStorage118 {
   }
 
   private VirtualBiome get(int index) {
+    if (this.storage == null) {
+      return this.palette.get(0);
+    }
+
     int id = this.storage.get(index);
     if (this.storage.getBitsPerEntry() > 8) {
       return this.rawToBiome.get(id);
@@ -82,6 +108,16 @@ public class BiomeStorage118 {
   }
 
   public void write(ByteBuf buf, ProtocolVersion version) {
+    if (this.storage == null) {
+      buf.writeByte(0); // 0 bit per entry = Single palette.
+      ProtocolUtils.writeVarInt(buf, this.palette.get(0).getID());
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0) {
+        ProtocolUtils.writeVarInt(buf, 0); // 0 entries.
+      }
+
+      return;
+    }
+
     buf.writeByte(this.storage.getBitsPerEntry());
     if (this.storage.getBitsPerEntry() <= 8) {
       ProtocolUtils.writeVarInt(buf, this.palette.size());
@@ -94,6 +130,10 @@ public class BiomeStorage118 {
   }
 
   public int getDataLength(ProtocolVersion version) {
+    if (this.storage == null) {
+      return 1 + ProtocolUtils.varIntBytes(this.palette.get(0).getID()) + (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0 ? 1 : 0);
+    }
+
     int length = 1;
     if (this.storage.getBitsPerEntry() <= 8) {
       length += ProtocolUtils.varIntBytes(this.palette.size());
@@ -106,7 +146,10 @@ public class BiomeStorage118 {
   }
 
   public BiomeStorage118 copy() {
-    return new BiomeStorage118(this.version, new ArrayList<>(this.palette), new HashMap<>(this.rawToBiome), this.storage.copy());
+    return new BiomeStorage118(
+        this.version, new ArrayList<>(this.palette), new HashMap<>(this.rawToBiome),
+        this.storage == null ? null : this.storage.copy(), this.counts == null ? null : this.counts.clone()
+    );
   }
 
   private int getIndex(VirtualBiome biome) {
@@ -138,6 +181,16 @@ public class BiomeStorage118 {
     }
 
     this.storage = newStorage;
+    this.counts = newSize > 8 ? null : Arrays.copyOf(this.counts, 1 << newSize);
+  }
+
+  private void setSingleValue(VirtualBiome biome) {
+    this.palette.clear();
+    this.palette.add(biome);
+    this.rawToBiome.clear();
+    this.rawToBiome.put(biome.getID(), biome);
+    this.storage = null;
+    this.counts = null;
   }
 
   @Override
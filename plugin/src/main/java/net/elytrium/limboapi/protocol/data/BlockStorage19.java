@@ -21,10 +21,11 @@ import com.google.common.base.Preconditions;
 import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import net.elytrium.limboapi.api.chunk.VirtualBlock;
 import net.elytrium.limboapi.api.chunk.data.BlockStorage;
 import net.elytrium.limboapi.api.chunk.util.CompactStorage;
@@ -33,39 +34,83 @@ import net.elytrium.limboapi.mcprotocollib.BitStorage19;
 import net.elytrium.limboapi.server.world.SimpleBlock;
 import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class BlockStorage19 implements BlockStorage {
 
   private final ProtocolVersion version;
   private final List<VirtualBlock> palette;
-  private final Map<Short, VirtualBlock> rawToBlock;
+  // Keyed by the block itself, not by its state id, as different blocks may share a state id on this version.
+  private final Object2IntOpenHashMap<VirtualBlock> paletteIndexes;
+  private final Int2ObjectOpenHashMap<VirtualBlock> rawToBlock;
 
+  // Null while the whole section is the first palette block.
   private CompactStorage storage;
+  // Amount of blocks per palette index, null with the direct palette.
+  private int[] counts;
 
   public BlockStorage19(ProtocolVersion version) {
     this.version = version;
     this.palette = new ArrayList<>();
-    this.rawToBlock = new HashMap<>();
+    this.paletteIndexes = new Object2IntOpenHashMap<>();
+    this.paletteIndexes.defaultReturnValue(-1);
+    this.rawToBlock = new Int2ObjectOpenHashMap<>();
 
     this.palette.add(SimpleBlock.AIR);
+    this.paletteIndexes.put(SimpleBlock.AIR, 0);
     this.rawToBlock.put(SimpleBlock.AIR.getBlockStateID(version), SimpleBlock.AIR);
-
-    this.storage = this.createStorage(4);
   }
 
-  private BlockStorage19(ProtocolVersion version, List<VirtualBlock> palette, Map<Short, VirtualBlock> rawToBlock, CompactStorage storage) {
+  private BlockStorage19(ProtocolVersion version, List<VirtualBlock> palette, Object2IntOpenHashMap<VirtualBlock> paletteIndexes,
+      Int2ObjectOpenHashMap<VirtualBlock> rawToBlock, CompactStorage storage, int[] counts) {
     this.version = version;
     this.palette = palette;
+    this.paletteIndexes = paletteIndexes;
     this.rawToBlock = rawToBlock;
     this.storage = storage;
+    this.counts = counts;
+  }
+
+  // Adopts the palette and the packed palette indexes as they are, the storage should have the layout of the version and 4 to 8 bits per entry.
+  public static BlockStorage19 ofPacked(ProtocolVersion version, VirtualBlock[] palette, CompactStorage storage) {
+    int bitsPerEntry = storage.getBitsPerEntry();
+    Preconditions.checkArgument(bitsPerEntry >= 4 && bitsPerEntry <= 8, "Unsupported bits per entry: " + bitsPerEntry);
+    Preconditions.checkArgument(palette.length <= 1 << bitsPerEntry, "Palette doesn't fit the storage");
+    Object2IntOpenHashMap<VirtualBlock> paletteIndexes = new Object2IntOpenHashMap<>(palette.length);
+    paletteIndexes.defaultReturnValue(-1);
+    Int2ObjectOpenHashMap<VirtualBlock> rawToBlock = new Int2ObjectOpenHashMap<>(palette.length);
+    for (int i = 0; i < palette.length; ++i) {
+      Preconditions.checkArgument(paletteIndexes.put(palette[i], i) == -1, "Duplicate palette block: " + palette[i]);
+      rawToBlock.put(palette[i].getBlockStateID(version), palette[i]);
+    }
+
+    int[] counts = new int[1 << bitsPerEntry];
+    for (int i = 0; i < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++i) {
+      int id = storage.get(i);
+      Preconditions.checkArgument(id < palette.length, "Palette index is out of bounds: " + id);
+      ++counts[id];
+    }
+
+    return new BlockStorage19(version, new ArrayList<>(Arrays.asList(palette)), paletteIndexes, rawToBlock, storage, counts);
   }
 
   @Override
   public void write(Object byteBufObject, ProtocolVersion version, int pass) {
     Preconditions.checkArgument(byteBufObject instanceof ByteBuf);
     ByteBuf buf = (ByteBuf) byteBufObject;
-    buf.writeByte(this.storage.getBitsPerEntry());
-    if (this.storage.getBitsPerEntry() > 8) {
+    if (this.isSingleValue()) {
+      buf.writeByte(0); // 0 bit per entry = Single palette.
+      ProtocolUtils.writeVarInt(buf, this.palette.get(0).getBlockStateID(this.version));
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0) {
+        ProtocolUtils.writeVarInt(buf, 0); // 0 entries.
+      }
+
+      return;
+    }
+
+    CompactStorage storage = this.getWritableStorage();
+    buf.writeByte(storage.getBitsPerEntry());
+    if (storage.getBitsPerEntry() > 8) {
       if (this.version.compareTo(ProtocolVersion.MINECRAFT_1_13) < 0) {
         ProtocolUtils.writeVarInt(buf, 0);
       }
@@ -76,43 +121,237 @@ public class BlockStorage19 implements BlockStorage {
       }
     }
 
-    this.storage.write(buf, version);
+    storage.write(buf, version);
   }
 
   @Override
   public void set(int posX, int posY, int posZ, @NonNull VirtualBlock block) {
+    if (this.storage == null) {
+      if (this.paletteIndexes.getInt(block) == 0) {
+        return;
+      }
+
+      this.storage = this.createStorage(4);
+      this.counts = new int[1 << 4];
+      this.counts[0] = SimpleChunk.MAX_BLOCKS_PER_SECTION;
+    }
+
     int id = this.getIndex(block);
-    this.storage.set(BlockStorage.index(posX, posY, posZ), id);
+    int index = BlockStorage.index(posX, posY, posZ);
+    if (this.counts == null) {
+      this.storage.set(index, id);
+    } else {
+      int previousID = this.storage.get(index);
+      if (previousID != id) {
+        this.storage.set(index, id);
+        --this.counts[previousID];
+        if (++this.counts[id] == SimpleChunk.MAX_BLOCKS_PER_SECTION) {
+          this.setSingleValue(block);
+        }
+      }
+    }
   }
 
   private int getIndex(VirtualBlock block) {
+    short raw = block.getBlockStateID(this.version);
     if (this.storage.getBitsPerEntry() > 8) {
-      short raw = block.getBlockStateID(this.version);
       this.rawToBlock.put(raw, block);
       return raw;
     } else {
-      int id = this.palette.indexOf(block);
+      int id = this.paletteIndexes.getInt(block);
       if (id == -1) {
         if (this.palette.size() >= (1 << this.storage.getBitsPerEntry())) {
-          int bitsPerEntry = StorageUtils.fixBitsPerEntry(this.version, this.storage.getBitsPerEntry() + 1);
-          CompactStorage newStorage = this.createStorage(bitsPerEntry);
-          for (int i = 0; i < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++i) {
-            newStorage.set(i, bitsPerEntry > 8 ? this.palette.get(this.storage.get(i)).getBlockStateID(this.version) : this.storage.get(i));
-          }
-
-          this.storage = newStorage;
-
+          this.resize(StorageUtils.fixBitsPerEntry(this.version, this.storage.getBitsPerEntry() + 1));
           return this.getIndex(block);
         }
 
+        id = this.palette.size();
         this.palette.add(block);
-        id = this.palette.size() - 1;
+        this.paletteIndexes.put(block, id);
+        this.rawToBlock.put(raw, block);
       }
 
       return id;
     }
   }
 
+  private void resize(int bitsPerEntry) {
+    // Palette index -> value in the new storage, so the blocks are re-packed in one pass without lookups.
+    int[] values = new int[this.palette.size()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = bitsPerEntry > 8 ? this.palette.get(i).getBlockStateID(this.version) : i;
+    }
+
+    CompactStorage newStorage = this.createStorage(bitsPerEntry);
+    for (int i = 0; i < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++i) {
+      newStorage.set(i, values[this.storage.get(i)]);
+    }
+
+    this.storage = newStorage;
+    this.counts = bitsPerEntry > 8 ? null : Arrays.copyOf(this.counts, 1 << bitsPerEntry);
+  }
+
+  @Override
+  public void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @NonNull VirtualBlock block) {
+    if (fromX == 0 && fromY == 0 && fromZ == 0 && toX == 15 && toY == 15 && toZ == 15) {
+      // The whole section is covered, so the old blocks are dropped instead of being overwritten one by one.
+      this.setSingleValue(block);
+    } else {
+      BlockStorage.super.fill(fromX, fromY, fromZ, toX, toY, toZ, block);
+    }
+  }
+
+  @Override
+  public void setPaletted(@NonNull VirtualBlock[] palette, int[] indices) {
+    this.setSingleValue(palette[indices[0]]);
+    // Source palette index -> own palette index, the old blocks are dropped as the whole section is overwritten.
+    int[] mapping = new int[palette.length];
+    Arrays.fill(mapping, -1);
+    int[] counts = new int[palette.length];
+    for (int index : indices) {
+      int id = mapping[index];
+      if (id == -1) {
+        VirtualBlock block = palette[index];
+        id = this.paletteIndexes.getInt(block);
+        if (id == -1) {
+          id = this.palette.size();
+          this.palette.add(block);
+          this.paletteIndexes.put(block, id);
+          this.rawToBlock.put(block.getBlockStateID(this.version), block);
+        }
+
+        mapping[index] = id;
+      }
+
+      ++counts[id];
+    }
+
+    if (this.palette.size() == 1) {
+      return;
+    }
+
+    int bitsPerEntry = StorageUtils.fixBitsPerEntry(this.version, Integer.SIZE - Integer.numberOfLeadingZeros(this.palette.size() - 1));
+    if (bitsPerEntry > 8) {
+      for (int i = 0; i < mapping.length; ++i) {
+        if (mapping[i] != -1) {
+          mapping[i] = this.palette.get(mapping[i]).getBlockStateID(this.version);
+        }
+      }
+    }
+
+    this.storage = this.createStorage(bitsPerEntry);
+    this.counts = bitsPerEntry > 8 ? null : Arrays.copyOf(counts, 1 << bitsPerEntry);
+    for (int i = 0; i < indices.length; ++i) {
+      this.storage.set(i, mapping[indices[i]]);
+    }
+  }
+
+  @Override
+  public boolean replace(@NonNull VirtualBlock from, @NonNull VirtualBlock to) {
+    if (from.equals(to)) {
+      return false;
+    }
+
+    if (this.storage != null && this.counts == null) {
+      return BlockStorage.super.replace(from, to);
+    }
+
+    int fromIndex = this.paletteIndexes.getInt(from);
+    if (fromIndex == -1) {
+      return false;
+    }
+
+    if (this.storage == null) {
+      this.setSingleValue(to);
+      return true;
+    }
+
+    if (this.counts[fromIndex] == 0) {
+      return false;
+    }
+
+    int toIndex = this.paletteIndexes.getInt(to);
+    if (toIndex == -1) {
+      // The palette entry is swapped, the storage itself stays untouched.
+      this.palette.set(fromIndex, to);
+      this.paletteIndexes.removeInt(from);
+      this.paletteIndexes.put(to, fromIndex);
+      this.rawToBlock.put(to.getBlockStateID(this.version), to);
+      return true;
+    }
+
+    for (int i = 0; i < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++i) {
+      if (this.storage.get(i) == fromIndex) {
+        this.storage.set(i, toIndex);
+      }
+    }
+
+    this.counts[toIndex] += this.counts[fromIndex];
+    this.counts[fromIndex] = 0;
+    if (this.counts[toIndex] == SimpleChunk.MAX_BLOCKS_PER_SECTION) {
+      this.setSingleValue(to);
+    }
+
+    return true;
+  }
+
+  private void setSingleValue(VirtualBlock block) {
+    this.palette.clear();
+    this.palette.add(block);
+    this.paletteIndexes.clear();
+    this.paletteIndexes.put(block, 0);
+    this.rawToBlock.clear();
+    this.rawToBlock.put(block.getBlockStateID(this.version), block);
+    this.storage = null;
+    this.counts = null;
+  }
+
+  private boolean isSingleValue() {
+    // Single palettes are supported since 1.18.
+    return this.storage == null && this.version.compareTo(ProtocolVersion.MINECRAFT_1_18) >= 0;
+  }
+
+  public boolean contains(@NonNull VirtualBlock block) {
+    int id = this.paletteIndexes.getInt(block);
+    if (this.storage == null) {
+      return id != -1;
+    }
+
+    if (this.counts == null) {
+      // Same as get, the direct storage values are resolved with rawToBlock.
+      short raw = block.getBlockStateID(this.version);
+      if (!block.equals(this.rawToBlock.get(raw))) {
+        return false;
+      }
+
+      for (int i = 0; i < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++i) {
+        if (this.storage.get(i) == raw) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    return id != -1 && this.counts[id] > 0;
+  }
+
+  // Palette of the storage returned by getPaletteStorage, null with the direct palette, as its values are state ids.
+  @Nullable
+  public VirtualBlock[] getPalette() {
+    return this.storage != null && this.counts == null ? null : this.palette.toArray(new VirtualBlock[0]);
+  }
+
+  // Packed palette indexes, null while the whole section is the first palette block.
+  @Nullable
+  public CompactStorage getPaletteStorage() {
+    return this.storage;
+  }
+
+  private CompactStorage getWritableStorage() {
+    return this.storage == null ? this.createStorage(4) : this.storage;
+  }
+
   private CompactStorage createStorage(int bitsPerEntry) {
     return this.version.compareTo(ProtocolVersion.MINECRAFT_1_16) < 0
         ? new BitStorage19(bitsPerEntry, SimpleChunk.MAX_BLOCKS_PER_SECTION)
@@ -122,9 +361,13 @@ public class BlockStorage19 implements BlockStorage {
   @NonNull
   @Override
   public VirtualBlock get(int posX, int posY, int posZ) {
+    if (this.storage == null) {
+      return this.palette.get(0);
+    }
+
     int id = this.storage.get(BlockStorage.index(posX, posY, posZ));
     if (this.storage.getBitsPerEntry() > 8) {
-      return this.rawToBlock.get((short) id);
+      return this.rawToBlock.get(id);
     } else {
       return this.palette.get(id);
     }
@@ -132,8 +375,14 @@ public class BlockStorage19 implements BlockStorage {
 
   @Override
   public int getDataLength(ProtocolVersion version) {
+    if (this.isSingleValue()) {
+      return 1 + ProtocolUtils.varIntBytes(this.palette.get(0).getBlockStateID(this.version))
+          + (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0 ? 1 : 0);
+    }
+
+    CompactStorage storage = this.getWritableStorage();
     int length = 1;
-    if (this.storage.getBitsPerEntry() > 8) {
+    if (storage.getBitsPerEntry() > 8) {
       if (this.version.compareTo(ProtocolVersion.MINECRAFT_1_13) < 0) {
         length += 1;
       }
@@ -144,12 +393,15 @@ public class BlockStorage19 implements BlockStorage {
       }
     }
 
-    return length + this.storage.getDataLength(version);
+    return length + storage.getDataLength(version);
   }
 
   @Override
   public BlockStorage copy() {
-    return new BlockStorage19(this.version, new ArrayList<>(this.palette), new HashMap<>(this.rawToBlock), this.storage.copy());
+    return new BlockStorage19(
+        this.version, new ArrayList<>(this.palette), this.paletteIndexes.clone(), this.rawToBlock.clone(),
+        this.storage == null ? null : this.storage.copy(), this.counts == null ? null : this.counts.clone()
+    );
   }
 
   @Override
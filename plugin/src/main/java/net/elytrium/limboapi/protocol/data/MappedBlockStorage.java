@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.protocol.data;
+
+import com.google.common.base.Preconditions;
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.data.BlockStorage;
+import net.elytrium.limboapi.api.chunk.util.CompactStorage;
+import net.elytrium.limboapi.mcprotocollib.BitStorage116;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+import net.elytrium.limboapi.server.world.chunk.MappedSectionStore;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// Keeps the palette indexes in a MappedSectionStore slot, 8 bits per block.
+public class MappedBlockStorage implements BlockStorage {
+
+  private static final int BITS_PER_ENTRY = 8;
+  private static final int LONGS = SimpleChunk.MAX_BLOCKS_PER_SECTION * BITS_PER_ENTRY / Long.SIZE;
+
+  private final MappedSectionStore store;
+  private final List<VirtualBlock> palette;
+  private final Object2IntOpenHashMap<VirtualBlock> paletteIndexes;
+
+  // Null while the whole section is the first palette block.
+  private MappedSectionStore.Slot slot;
+  // Used instead of the slot when the palette doesn't fit in 8 bits.
+  private BlockStorage fallback;
+
+  public MappedBlockStorage(MappedSectionStore store) {
+    this.store = store;
+    this.palette = new ArrayList<>();
+    this.paletteIndexes = new Object2IntOpenHashMap<>();
+    this.paletteIndexes.defaultReturnValue(-1);
+
+    this.palette.add(SimpleBlock.AIR);
+    this.paletteIndexes.put(SimpleBlock.AIR, 0);
+  }
+
+  private MappedBlockStorage(MappedSectionStore store, List<VirtualBlock> palette, Object2IntOpenHashMap<VirtualBlock> paletteIndexes) {
+    this.store = store;
+    this.palette = palette;
+    this.paletteIndexes = paletteIndexes;
+  }
+
+  // The slot longs have the same layout as the 8-bit palette storage of 1.9+, so they are written as they are.
+  // Older versions and the sections with the fallback storage are copied into a storage of the version.
+  @Override
+  public void write(Object byteBufObject, ProtocolVersion version, int pass) {
+    if (this.fallback != null || version.compareTo(ProtocolVersion.MINECRAFT_1_9) < 0) {
+      this.createProtocolStorage(version).write(byteBufObject, version, pass);
+      return;
+    }
+
+    Preconditions.checkArgument(byteBufObject instanceof ByteBuf);
+    ByteBuf buf = (ByteBuf) byteBufObject;
+    MappedSectionStore.Slot slot = this.slot;
+    if (slot == null && version.compareTo(ProtocolVersion.MINECRAFT_1_18) >= 0) {
+      buf.writeByte(0); // 0 bit per entry = Single palette.
+      ProtocolUtils.writeVarInt(buf, this.palette.get(0).getBlockStateID(version));
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0) {
+        ProtocolUtils.writeVarInt(buf, 0); // 0 entries.
+      }
+
+      return;
+    }
+
+    buf.writeByte(BITS_PER_ENTRY);
+    ProtocolUtils.writeVarInt(buf, this.palette.size());
+    for (VirtualBlock block : this.palette) {
+      ProtocolUtils.writeVarInt(buf, block.getBlockStateID(version));
+    }
+
+    if (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0) {
+      ProtocolUtils.writeVarInt(buf, LONGS);
+    }
+
+    if (slot == null) {
+      buf.writeZero(LONGS * Long.BYTES);
+    } else {
+      for (int i = 0; i < LONGS; ++i) {
+        buf.writeLong(slot.getLong(i));
+      }
+    }
+  }
+
+  @Override
+  public void set(int posX, int posY, int posZ, @NonNull VirtualBlock block) {
+    if (this.fallback != null) {
+      this.fallback.set(posX, posY, posZ, block);
+      return;
+    }
+
+    int id = this.paletteIndexes.getInt(block);
+    if (id == -1) {
+      id = this.palette.size();
+      if (id == 1 << BITS_PER_ENTRY) {
+        this.moveToFallback().set(posX, posY, posZ, block);
+        return;
+      }
+
+      this.palette.add(block);
+      this.paletteIndexes.put(block, id);
+    }
+
+    if (this.slot == null) {
+      if (id == 0) {
+        return;
+      }
+
+      this.slot = this.store.allocate(this);
+    }
+
+    this.slot.set(BlockStorage.index(posX, posY, posZ), id);
+  }
+
+  @Override
+  public void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @NonNull VirtualBlock block) {
+    if (this.fallback == null && fromX == 0 && fromY == 0 && fromZ == 0 && toX == 15 && toY == 15 && toZ == 15) {
+      // The whole section is covered, so the slot is given back to the store.
+      if (this.slot != null) {
+        this.slot.release();
+        this.slot = null;
+      }
+
+      this.palette.clear();
+      this.palette.add(block);
+      this.paletteIndexes.clear();
+      this.paletteIndexes.put(block, 0);
+    } else {
+      BlockStorage.super.fill(fromX, fromY, fromZ, toX, toY, toZ, block);
+    }
+  }
+
+  private BlockStorage moveToFallback() {
+    BlockStorage fallback = new BlockStorage19(ProtocolVersion.MINECRAFT_1_17);
+    for (int posY = 0; posY < 16; ++posY) {
+      for (int posZ = 0; posZ < 16; ++posZ) {
+        for (int posX = 0; posX < 16; ++posX) {
+          fallback.set(posX, posY, posZ, this.get(posX, posY, posZ));
+        }
+      }
+    }
+
+    if (this.slot != null) {
+      this.slot.release();
+      this.slot = null;
+    }
+
+    this.fallback = fallback;
+    return fallback;
+  }
+
+  @NonNull
+  @Override
+  public VirtualBlock get(int posX, int posY, int posZ) {
+    if (this.fallback != null) {
+      return this.fallback.get(posX, posY, posZ);
+    }
+
+    MappedSectionStore.Slot slot = this.slot;
+    return this.palette.get(slot == null ? 0 : slot.get(BlockStorage.index(posX, posY, posZ)));
+  }
+
+  @Override
+  public int getDataLength(ProtocolVersion version) {
+    if (this.fallback != null || version.compareTo(ProtocolVersion.MINECRAFT_1_9) < 0) {
+      return this.createProtocolStorage(version).getDataLength(version);
+    }
+
+    boolean pre1215 = version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0;
+    if (this.slot == null && version.compareTo(ProtocolVersion.MINECRAFT_1_18) >= 0) {
+      return 1 + ProtocolUtils.varIntBytes(this.palette.get(0).getBlockStateID(version)) + (pre1215 ? 1 : 0);
+    }
+
+    int length = 1 + ProtocolUtils.varIntBytes(this.palette.size());
+    for (VirtualBlock block : this.palette) {
+      length += ProtocolUtils.varIntBytes(block.getBlockStateID(version));
+    }
+
+    return length + (pre1215 ? ProtocolUtils.varIntBytes(LONGS) : 0) + LONGS * Long.BYTES;
+  }
+
+  // Palette of the storage returned by copyPaletteStorage, null if the blocks are kept in the fallback storage.
+  @Nullable
+  public VirtualBlock[] getPalette() {
+    return this.fallback == null ? this.palette.toArray(new VirtualBlock[0]) : null;
+  }
+
+  // Heap copy of the slot as the 8-bit 1.16+ palette storage, null while the whole section is the first palette block.
+  @Nullable
+  public CompactStorage copyPaletteStorage() {
+    MappedSectionStore.Slot slot = this.slot;
+    if (slot == null) {
+      return null;
+    }
+
+    BitStorage116 storage = new BitStorage116(BITS_PER_ENTRY, SimpleChunk.MAX_BLOCKS_PER_SECTION);
+    slot.copyLongs(storage.getData());
+    return storage;
+  }
+
+  @Nullable
+  public BlockStorage getFallback() {
+    return this.fallback;
+  }
+
+  private BlockStorage createProtocolStorage(ProtocolVersion version) {
+    BlockStorage storage = version.compareTo(ProtocolVersion.MINECRAFT_1_9) < 0 ? new BlockStorage17() : new BlockStorage19(version);
+    for (int i = 0; i < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++i) {
+      storage.set(i & 15, i >> 8, i >> 4 & 15, this.get(i & 15, i >> 8, i >> 4 & 15));
+    }
+
+    return storage;
+  }
+
+  @Override
+  public BlockStorage copy() {
+    if (this.fallback != null) {
+      return this.fallback.copy();
+    }
+
+    MappedBlockStorage copy = new MappedBlockStorage(this.store, new ArrayList<>(this.palette), this.paletteIndexes.clone());
+    if (this.slot != null) {
+      copy.slot = this.store.allocate(copy);
+      for (int i = 0; i < LONGS; ++i) {
+        copy.slot.setLong(i, this.slot.getLong(i));
+      }
+    }
+
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return "MappedBlockStorage{"
+        + "palette=" + this.palette
+        + ", fallback=" + this.fallback
+        + "}";
+  }
+}
@@ -19,20 +19,24 @@ package net.elytrium.limboapi.protocol.packets.s2c;
 
 import com.google.common.base.Preconditions;
 import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.natives.compression.VelocityCompressor;
+import com.velocitypowered.natives.util.MoreByteBufUtils;
+import com.velocitypowered.natives.util.Natives;
 import com.velocitypowered.proxy.connection.MinecraftSessionHandler;
 import com.velocitypowered.proxy.protocol.MinecraftPacket;
 import com.velocitypowered.proxy.protocol.ProtocolUtils;
 import com.velocitypowered.proxy.protocol.ProtocolUtils.Direction;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.Deflater;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
 import net.elytrium.limboapi.LimboAPI;
-import net.elytrium.limboapi.api.chunk.VirtualBlock;
 import net.elytrium.limboapi.api.chunk.VirtualBlockEntity;
+import net.elytrium.limboapi.api.chunk.data.BlockSection;
 import net.elytrium.limboapi.api.chunk.data.ChunkSnapshot;
 import net.elytrium.limboapi.api.chunk.data.LightSection;
 import net.elytrium.limboapi.api.chunk.util.CompactStorage;
@@ -42,12 +46,18 @@ import net.elytrium.limboapi.material.Biome;
 import net.elytrium.limboapi.mcprotocollib.BitStorage116;
 import net.elytrium.limboapi.mcprotocollib.BitStorage19;
 import net.elytrium.limboapi.protocol.util.NetworkSection;
+import net.elytrium.limboapi.protocol.util.NetworkSectionCache;
+import net.elytrium.limboapi.server.world.chunk.SimpleLightSection;
 import net.kyori.adventure.nbt.BinaryTag;
 import net.kyori.adventure.nbt.CompoundBinaryTag;
 import net.kyori.adventure.nbt.LongArrayBinaryTag;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class ChunkDataPacket implements MinecraftPacket {
 
+  // Idle 1.7 chunk data compressors, borrowed for a single encode. The compressors that don't fit are closed when returned.
+  private static final BlockingQueue<VelocityCompressor> COMPRESSORS = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
   private final ChunkSnapshot chunk;
   private final NetworkSection[] sections;
   private final int mask;
@@ -59,6 +69,10 @@ public class ChunkDataPacket implements MinecraftPacket {
   private final Map<Integer, long[]> heightmap1215;
 
   public ChunkDataPacket(ChunkSnapshot chunkSnapshot, boolean hasLegacySkyLight, int maxSections) {
+    this(chunkSnapshot, hasLegacySkyLight, maxSections, null);
+  }
+
+  public ChunkDataPacket(ChunkSnapshot chunkSnapshot, boolean hasLegacySkyLight, int maxSections, @Nullable NetworkSectionCache.Lease sectionLease) {
     this.maxSections = maxSections;
     this.sections = new NetworkSection[maxSections];
 
@@ -70,12 +84,13 @@ public class ChunkDataPacket implements MinecraftPacket {
         ++nonNullSections;
         mask |= 1 << i;
         LightSection light = this.chunk.getLight()[i];
+        BlockSection blockSection = this.chunk.getSections()[i];
         NetworkSection section = new NetworkSection(
-            i,
-            this.chunk.getSections()[i],
+            sectionLease == null
+                ? NetworkSectionCache.createUncached(blockSection, this.chunk, i)
+                : sectionLease.acquire(blockSection, this.chunk, i),
             light.getBlockLight(),
-            hasLegacySkyLight ? light.getSkyLight() : null,
-            this.chunk.getBiomes()
+            hasLegacySkyLight ? light.getSkyLight() : null
         );
         this.sections[i] = section;
       }
@@ -83,8 +98,16 @@ public class ChunkDataPacket implements MinecraftPacket {
 
     this.nonNullSections = nonNullSections;
     this.mask = mask;
-    this.heightmap114 = this.createHeightMap(true);
-    this.heightmap116 = this.createHeightMap(false);
+    int[] surface = new int[256];
+    int[] motionBlocking = new int[256];
+    for (int i = Math.min(this.sections.length, 16) - 1; i >= 0; --i) {
+      if (this.sections[i] != null) {
+        this.sections[i].getEntry().fillHeights(i << 4, surface, motionBlocking);
+      }
+    }
+
+    this.heightmap114 = this.createHeightMap(surface, motionBlocking, true);
+    this.heightmap116 = this.createHeightMap(surface, motionBlocking, false);
     this.heightmap1215 = new HashMap<>();
     for (Map.Entry<String, ? extends BinaryTag> entry : this.heightmap116) {
       this.heightmap1215.put(this.findHeightMapId(entry.getKey()), ((LongArrayBinaryTag) entry.getValue()).value());
@@ -122,11 +145,7 @@ public class ChunkDataPacket implements MinecraftPacket {
     if (version.compareTo(ProtocolVersion.MINECRAFT_1_17) >= 0) {
       // 1.17 mask.
       if (version.compareTo(ProtocolVersion.MINECRAFT_1_17_1) <= 0) {
-        long[] mask = this.create117Mask();
-        ProtocolUtils.writeVarInt(buf, mask.length);
-        for (long l : mask) {
-          buf.writeLong(l);
-        }
+        writeMask(buf, BitSet.valueOf(new long[] {this.mask}));
       }
     } else {
       buf.writeBoolean(this.chunk.isFullChunk());
@@ -177,63 +196,91 @@ public class ChunkDataPacket implements MinecraftPacket {
       }
     }
 
-    ByteBuf data = this.createChunkData(version);
-    try {
-      if (version.compareTo(ProtocolVersion.MINECRAFT_1_8) >= 0) {
-        ProtocolUtils.writeVarInt(buf, data.readableBytes());
-        buf.writeBytes(data);
-        if (version.compareTo(ProtocolVersion.MINECRAFT_1_9_4) >= 0) {
-          List<VirtualBlockEntity.Entry> blockEntityEntries = this.chunk.getBlockEntityEntries();
-          ProtocolUtils.writeVarInt(buf, blockEntityEntries.size());
-          for (VirtualBlockEntity.Entry blockEntityEntry : blockEntityEntries) {
-            CompoundBinaryTag blockEntityNbt = blockEntityEntry.getNbt();
-            if (version.compareTo(ProtocolVersion.MINECRAFT_1_18) >= 0) {
-              buf.writeByte(((blockEntityEntry.getPosX() & 15) << 4) | (blockEntityEntry.getPosZ() & 15));
-              buf.writeShort(blockEntityEntry.getPosY());
-              ProtocolUtils.writeVarInt(buf, blockEntityEntry.getID(version));
-            } else {
-              blockEntityNbt.putString("id", blockEntityEntry.getBlockEntity().getModernID());
-              blockEntityNbt.putInt("x", blockEntityEntry.getPosX());
-              blockEntityNbt.putInt("y", blockEntityEntry.getPosY());
-              blockEntityNbt.putInt("z", blockEntityEntry.getPosZ());
-            }
-
-            ProtocolUtils.writeBinaryTag(buf, version, blockEntityNbt);
+    int dataLength = this.getChunkDataLength(version);
+    if (version.compareTo(ProtocolVersion.MINECRAFT_1_8) >= 0) {
+      ProtocolUtils.writeVarInt(buf, dataLength);
+      this.writeChunkData(buf, dataLength, version);
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_9_4) >= 0) {
+        List<VirtualBlockEntity.Entry> blockEntityEntries = this.chunk.getBlockEntityEntries();
+        ProtocolUtils.writeVarInt(buf, blockEntityEntries.size());
+        for (VirtualBlockEntity.Entry blockEntityEntry : blockEntityEntries) {
+          CompoundBinaryTag blockEntityNbt = blockEntityEntry.getNbt();
+          if (version.compareTo(ProtocolVersion.MINECRAFT_1_18) >= 0) {
+            buf.writeByte(((blockEntityEntry.getPosX() & 15) << 4) | (blockEntityEntry.getPosZ() & 15));
+            buf.writeShort(blockEntityEntry.getPosY());
+            ProtocolUtils.writeVarInt(buf, blockEntityEntry.getID(version));
+          } else {
+            blockEntityNbt.putString("id", blockEntityEntry.getBlockEntity().getModernID());
+            blockEntityNbt.putInt("x", blockEntityEntry.getPosX());
+            blockEntityNbt.putInt("y", blockEntityEntry.getPosY());
+            blockEntityNbt.putInt("z", blockEntityEntry.getPosZ());
           }
+
+          ProtocolUtils.writeBinaryTag(buf, version, blockEntityNbt);
         }
-        if (version.compareTo(ProtocolVersion.MINECRAFT_1_17_1) > 0) {
-          long[] mask = this.create117Mask();
-          if (version.compareTo(ProtocolVersion.MINECRAFT_1_20) < 0) {
-            buf.writeBoolean(true); // Trust edges.
-          }
-          ProtocolUtils.writeVarInt(buf, mask.length); // Skylight mask.
-          for (long m : mask) {
-            buf.writeLong(m);
-          }
-          ProtocolUtils.writeVarInt(buf, mask.length); // BlockLight mask.
-          for (long m : mask) {
-            buf.writeLong(m);
-          }
-          ProtocolUtils.writeVarInt(buf, 0); // EmptySkylight mask.
-          ProtocolUtils.writeVarInt(buf, 0); // EmptyBlockLight mask.
-          ProtocolUtils.writeVarInt(buf, this.chunk.getLight().length);
-          for (LightSection section : this.chunk.getLight()) {
-            ProtocolUtils.writeByteArray(buf, section.getSkyLight().getData());
-          }
-          ProtocolUtils.writeVarInt(buf, this.chunk.getLight().length);
-          for (LightSection section : this.chunk.getLight()) {
-            ProtocolUtils.writeByteArray(buf, section.getBlockLight().getData());
-          }
+      }
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_17_1) > 0) {
+        if (version.compareTo(ProtocolVersion.MINECRAFT_1_20) < 0) {
+          buf.writeBoolean(true); // Trust edges.
         }
-      } else {
-        this.write17(buf, data);
+
+        LightSection[] light = this.chunk.getLight();
+        BitSet skyLightMask = new BitSet();
+        BitSet blockLightMask = new BitSet();
+        BitSet emptySkyLightMask = new BitSet();
+        BitSet emptyBlockLightMask = new BitSet();
+        for (int i = 0; i < light.length; ++i) {
+          // Unlit sections go to the empty masks, so their arrays are not sent at all.
+          (SimpleLightSection.getUniformLevel(light[i].getSkyLight()) == 0 ? emptySkyLightMask : skyLightMask).set(i);
+          (SimpleLightSection.getUniformLevel(light[i].getBlockLight()) == 0 ? emptyBlockLightMask : blockLightMask).set(i);
+        }
+
+        writeMask(buf, skyLightMask);
+        writeMask(buf, blockLightMask);
+        writeMask(buf, emptySkyLightMask);
+        writeMask(buf, emptyBlockLightMask);
+        ProtocolUtils.writeVarInt(buf, skyLightMask.cardinality());
+        for (int i = skyLightMask.nextSetBit(0); i >= 0; i = skyLightMask.nextSetBit(i + 1)) {
+          ProtocolUtils.writeByteArray(buf, SimpleLightSection.getReadOnlyData(light[i].getSkyLight()));
+        }
+        ProtocolUtils.writeVarInt(buf, blockLightMask.cardinality());
+        for (int i = blockLightMask.nextSetBit(0); i >= 0; i = blockLightMask.nextSetBit(i + 1)) {
+          ProtocolUtils.writeByteArray(buf, SimpleLightSection.getReadOnlyData(light[i].getBlockLight()));
+        }
+      }
+    } else {
+      // 1.7 chunk data is compressed, so it still needs a scratch buffer.
+      VelocityCompressor compressor = COMPRESSORS.poll();
+      if (compressor == null) {
+        compressor = Natives.compress.get().create(9);
+      }
+
+      try {
+        ByteBuf data = MoreByteBufUtils.preferredBuffer(buf.alloc(), compressor, dataLength);
+        try {
+          this.writeChunkData(data, dataLength, version);
+          this.write17(buf, data, compressor);
+        } finally {
+          data.release();
+        }
+      } finally {
+        if (!COMPRESSORS.offer(compressor)) {
+          compressor.close();
+        }
+      }
+    }
+  }
+
+  // Builds the section storages for the specified version, so the encoding itself won't need to do it.
+  public void prepareSections(ProtocolVersion version) {
+    for (NetworkSection section : this.sections) {
+      if (section != null) {
+        section.getDataLength(version);
       }
-    } finally {
-      data.release();
     }
   }
 
-  private ByteBuf createChunkData(ProtocolVersion version) {
+  private int getChunkDataLength(ProtocolVersion version) {
     int dataLength = 0;
     for (NetworkSection networkSection : this.sections) {
       if (networkSection != null) {
@@ -249,7 +296,11 @@ public class ChunkDataPacket implements MinecraftPacket {
       dataLength += (this.maxSections - this.nonNullSections) * emptySectionSize;
     }
 
-    ByteBuf data = Unpooled.buffer(dataLength);
+    return dataLength;
+  }
+
+  private void writeChunkData(ByteBuf data, int dataLength, ProtocolVersion version) {
+    int startIndex = data.writerIndex();
     for (int pass = 0; pass < 4; ++pass) {
       for (NetworkSection section : this.sections) {
         if (section != null) {
@@ -283,29 +334,18 @@ public class ChunkDataPacket implements MinecraftPacket {
       }
     }
 
-    if (dataLength != data.readableBytes()) {
-      LimboAPI.getLogger().warn("Data length mismatch: " + dataLength + " != " + data.readableBytes() + ". Version: " + version);
+    int writtenLength = data.writerIndex() - startIndex;
+    if (dataLength != writtenLength) {
+      LimboAPI.getLogger().warn("Data length mismatch: " + dataLength + " != " + writtenLength + ". Version: " + version);
     }
-
-    return data;
   }
 
-  private CompoundBinaryTag createHeightMap(boolean pre116) {
+  private CompoundBinaryTag createHeightMap(int[] surfaceHeights, int[] motionBlockingHeights, boolean pre116) {
     CompactStorage surface = pre116 ? new BitStorage19(9, 256) : new BitStorage116(9, 256);
     CompactStorage motionBlocking = pre116 ? new BitStorage19(9, 256) : new BitStorage116(9, 256);
-
-    for (int posY = 0; posY < 256; ++posY) {
-      for (int posX = 0; posX < 16; ++posX) {
-        for (int posZ = 0; posZ < 16; ++posZ) {
-          VirtualBlock block = this.chunk.getBlock(posX, posY, posZ);
-          if (!block.isAir()) {
-            surface.set(posX + (posZ << 4), posY + 1);
-          }
-          if (block.isMotionBlocking()) {
-            motionBlocking.set(posX + (posZ << 4), posY + 1);
-          }
-        }
-      }
+    for (int i = 0; i < 256; ++i) {
+      surface.set(i, surfaceHeights[i]);
+      motionBlocking.set(i, motionBlockingHeights[i]);
     }
 
     return CompoundBinaryTag.builder()
@@ -314,35 +354,48 @@ public class ChunkDataPacket implements MinecraftPacket {
         .build();
   }
 
-  private long[] create117Mask() {
-    return BitSet.valueOf(
-        new long[] {
-            this.mask
-        }
-    ).toLongArray();
+  // Closes the idle compressors, the ones borrowed at the moment are closed when returned if the queue is full.
+  public static void releaseCompressors() {
+    for (VelocityCompressor compressor = COMPRESSORS.poll(); compressor != null; compressor = COMPRESSORS.poll()) {
+      compressor.close();
+    }
+  }
+
+  private static void writeMask(ByteBuf buf, BitSet mask) {
+    long[] longs = mask.toLongArray();
+    ProtocolUtils.writeVarInt(buf, longs.length);
+    for (long value : longs) {
+      buf.writeLong(value);
+    }
   }
 
-  // TODO: Use velocity compressor.
-  private void write17(ByteBuf out, ByteBuf data) {
+  private void write17(ByteBuf out, ByteBuf data, VelocityCompressor compressor) {
     out.writeShort(0); // Extended bitmask.
-    byte[] uncompressed = new byte[data.readableBytes()];
-    data.readBytes(uncompressed);
-    ByteBuf compressed = Unpooled.buffer();
-    Deflater deflater = new Deflater(9);
+    int sizeIndex = out.writerIndex();
+    out.writeInt(0); // Compressed size, set after the compression.
+    boolean compatible = switch (compressor.preferredBufferType()) {
+      case DIRECT_REQUIRED -> out.hasMemoryAddress();
+      case HEAP_REQUIRED -> out.hasArray();
+      default -> true;
+    };
+
     try {
-      deflater.setInput(uncompressed);
-      deflater.finish();
-      byte[] buffer = new byte[1024];
-      while (!deflater.finished()) {
-        int count = deflater.deflate(buffer);
-        compressed.writeBytes(buffer, 0, count);
+      if (compatible) {
+        compressor.deflate(data, out);
+      } else {
+        ByteBuf compressed = MoreByteBufUtils.preferredBuffer(out.alloc(), compressor, data.readableBytes());
+        try {
+          compressor.deflate(data, compressed);
+          out.writeBytes(compressed);
+        } finally {
+          compressed.release();
+        }
       }
-      out.writeInt(compressed.readableBytes()); // Compressed size.
-      out.writeBytes(compressed);
-    } finally {
-      deflater.end();
-      compressed.release();
+    } catch (DataFormatException e) {
+      throw new IllegalStateException(e);
     }
+
+    out.setInt(sizeIndex, out.writerIndex() - sizeIndex - 4);
   }
 
   @Override
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.protocol.packets.s2c;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.connection.MinecraftSessionHandler;
+import com.velocitypowered.proxy.protocol.MinecraftPacket;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.protocol.util.WireFormat;
+
+// Changed blocks of one chunk section (SectionBlocksUpdate since 1.16.2).
+public class MultiBlockChangePacket implements MinecraftPacket {
+
+  // Versions that change the layout of the packet itself, the block state ids are covered by WireFormat.
+  private static final List<ProtocolVersion> LAYOUT_CHANGES = List.of(
+      ProtocolVersion.MINECRAFT_1_8,
+      ProtocolVersion.MINECRAFT_1_16_2,
+      ProtocolVersion.MINECRAFT_1_20
+  );
+
+  private final Map<ProtocolVersion, byte[]> encoded = new EnumMap<>(ProtocolVersion.class);
+  private final int sectionX;
+  private final int sectionY;
+  private final int sectionZ;
+  // Indexes in the BlockStorage#index order.
+  private final short[] indexes;
+  private final VirtualBlock[] blocks;
+
+  public MultiBlockChangePacket(int sectionX, int sectionY, int sectionZ, short[] indexes, VirtualBlock[] blocks) {
+    this.sectionX = sectionX;
+    this.sectionY = sectionY;
+    this.sectionZ = sectionZ;
+    this.indexes = indexes;
+    this.blocks = blocks;
+  }
+
+  public MultiBlockChangePacket() {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public void decode(ByteBuf buf, ProtocolUtils.Direction direction, ProtocolVersion protocolVersion) {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public void encode(ByteBuf buf, ProtocolUtils.Direction direction, ProtocolVersion protocolVersion) {
+    ProtocolVersion format = getFormatVersion(protocolVersion);
+    byte[] data;
+    synchronized (this.encoded) {
+      data = this.encoded.get(format);
+      if (data == null) {
+        ByteBuf formatBuf = Unpooled.buffer();
+        this.encode(formatBuf, format);
+        data = new byte[formatBuf.readableBytes()];
+        formatBuf.readBytes(data);
+        this.encoded.put(format, data);
+      }
+    }
+
+    buf.writeBytes(data);
+  }
+
+  private void encode(ByteBuf buf, ProtocolVersion version) {
+    if (version.compareTo(ProtocolVersion.MINECRAFT_1_8) < 0) {
+      buf.writeInt(this.sectionX);
+      buf.writeInt(this.sectionZ);
+      buf.writeShort(this.indexes.length);
+      buf.writeInt(this.indexes.length * Integer.BYTES);
+      for (int i = 0; i < this.indexes.length; ++i) {
+        int index = this.indexes[i];
+        // The 1.7 state id is already the block id and the metadata.
+        int posY = this.sectionY << 4 | index >> 8;
+        buf.writeInt((index & 15) << 28 | (index >> 4 & 15) << 24 | posY << 16 | this.blocks[i].getBlockStateID(version) & 0xFFFF);
+      }
+    } else if (version.compareTo(ProtocolVersion.MINECRAFT_1_16_2) < 0) {
+      buf.writeInt(this.sectionX);
+      buf.writeInt(this.sectionZ);
+      ProtocolUtils.writeVarInt(buf, this.indexes.length);
+      for (int i = 0; i < this.indexes.length; ++i) {
+        int index = this.indexes[i];
+        buf.writeByte((index & 15) << 4 | index >> 4 & 15);
+        buf.writeByte(this.sectionY << 4 | index >> 8);
+        ProtocolUtils.writeVarInt(buf, this.blocks[i].getBlockStateID(version));
+      }
+    } else {
+      buf.writeLong(((long) this.sectionX & 0x3FFFFF) << 42 | ((long) this.sectionZ & 0x3FFFFF) << 20 | (long) this.sectionY & 0xFFFFF);
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_20) < 0) {
+        buf.writeBoolean(true); // Suppress light updates, same as the trusted edges of the chunk data.
+      }
+
+      ProtocolUtils.writeVarInt(buf, this.indexes.length);
+      for (int i = 0; i < this.indexes.length; ++i) {
+        int index = this.indexes[i];
+        // Position is x << 8 | z << 4 | y.
+        writeVarLong(buf, (long) this.blocks[i].getBlockStateID(version) << 12 | (index & 15) << 8 | (index >> 4 & 15) << 4 | index >> 8);
+      }
+    }
+  }
+
+  // The first version of the group of versions that encode this packet to the same bytes.
+  private static ProtocolVersion getFormatVersion(ProtocolVersion version) {
+    ProtocolVersion format = WireFormat.of(version).getVersion();
+    for (ProtocolVersion layoutChange : LAYOUT_CHANGES) {
+      if (layoutChange.compareTo(format) > 0 && layoutChange.compareTo(version) <= 0) {
+        format = layoutChange;
+      }
+    }
+
+    return format;
+  }
+
+  private static void writeVarLong(ByteBuf buf, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buf.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+
+    buf.writeByte((int) value);
+  }
+
+  @Override
+  public boolean handle(MinecraftSessionHandler handler) {
+    throw new IllegalStateException();
+  }
+}
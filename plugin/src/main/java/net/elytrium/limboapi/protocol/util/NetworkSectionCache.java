@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.protocol.util;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.elytrium.limboapi.api.chunk.VirtualBiome;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.data.BlockSection;
+import net.elytrium.limboapi.api.chunk.data.BlockStorage;
+import net.elytrium.limboapi.api.chunk.data.ChunkSnapshot;
+import net.elytrium.limboapi.api.chunk.util.CompactStorage;
+import net.elytrium.limboapi.mcprotocollib.BitStorage116;
+import net.elytrium.limboapi.protocol.data.BiomeStorage118;
+import net.elytrium.limboapi.protocol.data.BlockStorage17;
+import net.elytrium.limboapi.protocol.data.BlockStorage19;
+import net.elytrium.limboapi.protocol.data.MappedBlockStorage;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import net.elytrium.limboapi.server.world.chunk.SimpleSection;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// Sections with the same blocks and biomes share one entry, so they are encoded once per wire format
+// and reused by every chunk and every Limbo holding a lease on them.
+public class NetworkSectionCache {
+
+  private static final Map<Key, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+  public static Entry createUncached(BlockSection section, ChunkSnapshot chunk, int index) {
+    return new Entry(Key.of(section, chunk, index));
+  }
+
+  public static int size() {
+    return ENTRIES.size();
+  }
+
+  private static Entry acquire(Key key) {
+    return ENTRIES.compute(key, (k, entry) -> {
+      if (entry == null) {
+        entry = new Entry(k);
+      }
+
+      ++entry.references;
+      return entry;
+    });
+  }
+
+  private static void release(Entry entry) {
+    ENTRIES.computeIfPresent(entry.key, (k, current) -> current != entry || --current.references > 0 ? current : null);
+  }
+
+  public static class Lease {
+
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean released;
+
+    public Entry acquire(BlockSection section, ChunkSnapshot chunk, int index) {
+      Entry entry = NetworkSectionCache.acquire(Key.of(section, chunk, index));
+      synchronized (this.entries) {
+        if (this.released) {
+          NetworkSectionCache.release(entry);
+          throw new IllegalStateException("Lease is already released");
+        }
+
+        this.entries.add(entry);
+      }
+
+      return entry;
+    }
+
+    public void release() {
+      synchronized (this.entries) {
+        if (!this.released) {
+          this.released = true;
+          this.entries.forEach(NetworkSectionCache::release);
+          this.entries.clear();
+        }
+      }
+    }
+  }
+
+  public static class Entry {
+
+    // Sections of 1.7 and 1.8 are written in multiple passes, so they are kept as storages.
+    private final Map<WireFormat, BlockStorage> legacyStorages = new HashMap<>();
+    // Everything except light, encoded once per wire format.
+    private final Map<WireFormat, byte[]> encoded = new HashMap<>();
+    private final Key key;
+    private final int blockCount;
+    private final int fluidCount;
+
+    private int references;
+
+    private Entry(Key key) {
+      this.key = key;
+
+      boolean[] air = new boolean[key.palette.length];
+      boolean[] fluid = new boolean[key.palette.length];
+      for (int i = 0; i < air.length; ++i) {
+        air[i] = key.palette[i].isAir();
+        fluid[i] = SimpleBlock.isFluid(key.palette[i]);
+      }
+
+      this.blockCount = SimpleChunk.MAX_BLOCKS_PER_SECTION - count(key, air);
+      this.fluidCount = count(key, fluid);
+    }
+
+    // Amount of the blocks whose palette entry is flagged, the indexes are only read for mixed palettes.
+    private static int count(Key key, boolean[] flags) {
+      int flagged = 0;
+      for (boolean flag : flags) {
+        flagged += flag ? 1 : 0;
+      }
+
+      if (flagged == 0 || flagged == flags.length) {
+        return flagged == 0 ? 0 : SimpleChunk.MAX_BLOCKS_PER_SECTION;
+      }
+
+      int count = 0;
+      for (int index = 0; index < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++index) {
+        if (flags[key.get(index)]) {
+          ++count;
+        }
+      }
+
+      return count;
+    }
+
+    public BlockStorage getLegacyStorage(ProtocolVersion version) {
+      WireFormat format = WireFormat.of(version);
+      synchronized (this.legacyStorages) {
+        BlockStorage storage = this.legacyStorages.get(format);
+        if (storage == null) {
+          storage = new BlockStorage17();
+          this.fillBlocks(storage);
+          this.legacyStorages.put(format, storage);
+        }
+
+        return storage;
+      }
+    }
+
+    public byte[] getEncoded(ProtocolVersion version) {
+      WireFormat format = WireFormat.of(version);
+      synchronized (this.encoded) {
+        byte[] data = this.encoded.get(format);
+        if (data == null) {
+          data = this.encode(format.getVersion());
+          this.encoded.put(format, data);
+        }
+
+        return data;
+      }
+    }
+
+    public int getBlockCount() {
+      return this.blockCount;
+    }
+
+    // Sets the height (plus one) of the highest non-air and motion blocking blocks of this section for the columns
+    // whose height isn't set yet, so the sections should be visited top-down.
+    public void fillHeights(int baseY, int[] surface, int[] motionBlocking) {
+      VirtualBlock[] palette = this.key.palette;
+      boolean[] nonAir = new boolean[palette.length];
+      boolean[] blocking = new boolean[palette.length];
+      boolean empty = true;
+      for (int i = 0; i < palette.length; ++i) {
+        nonAir[i] = !palette[i].isAir();
+        blocking[i] = palette[i].isMotionBlocking();
+        empty &= !nonAir[i] && !blocking[i];
+      }
+
+      if (empty) {
+        return;
+      }
+
+      for (int column = 0; column < 256; ++column) {
+        for (int posY = 15; posY >= 0 && (surface[column] == 0 || motionBlocking[column] == 0); --posY) {
+          // Same as BlockStorage.index(posX, posY, posZ), as column is posX + (posZ << 4).
+          int block = this.key.get(posY << 8 | column);
+          if (surface[column] == 0 && nonAir[block]) {
+            surface[column] = baseY + posY + 1;
+          }
+          if (motionBlocking[column] == 0 && blocking[block]) {
+            motionBlocking[column] = baseY + posY + 1;
+          }
+        }
+      }
+    }
+
+    private byte[] encode(ProtocolVersion version) {
+      BlockStorage storage = new BlockStorage19(version);
+      this.fillBlocks(storage);
+
+      BiomeStorage118 biomeStorage = null;
+      int dataLength = storage.getDataLength(version);
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_14) >= 0) {
+        dataLength += 2; // Block count short.
+      }
+      if (version.compareTo(ProtocolVersion.MINECRAFT_26_1) >= 0) {
+        dataLength += 2; // Fluid count short.
+      }
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_17_1) > 0) {
+        biomeStorage = this.createBiomeStorage(version);
+        dataLength += biomeStorage.getDataLength(version);
+      }
+
+      byte[] data = new byte[dataLength];
+      ByteBuf buf = Unpooled.wrappedBuffer(data).writerIndex(0);
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_14) >= 0) {
+        buf.writeShort(this.blockCount);
+        if (version.compareTo(ProtocolVersion.MINECRAFT_26_1) >= 0) {
+          buf.writeShort(this.fluidCount);
+        }
+      }
+
+      storage.write(buf, version, 0);
+      if (biomeStorage != null) {
+        biomeStorage.write(buf, version);
+      }
+
+      return data;
+    }
+
+    private BiomeStorage118 createBiomeStorage(ProtocolVersion version) {
+      BiomeStorage118 storage = new BiomeStorage118(version);
+      for (int biomeIndex = 0; biomeIndex < SimpleChunk.MAX_BIOMES_PER_SECTION; ++biomeIndex) {
+        storage.set(biomeIndex, this.key.biomes[biomeIndex]);
+      }
+
+      return storage;
+    }
+
+    private void fillBlocks(BlockStorage storage) {
+      int[] indices = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+      if (this.key.storage != null) {
+        for (int index = 0; index < indices.length; ++index) {
+          indices[index] = this.key.storage.get(index);
+        }
+      }
+
+      storage.setPaletted(this.key.palette, indices);
+    }
+  }
+
+  // Sections are keyed by their palette and packed palette indexes, which are taken from the section storage without copying,
+  // as snapshot sections are never modified. Equal sections with different palette orders only miss the cache.
+  private static final class Key {
+
+    private final VirtualBlock[] palette;
+    private final int[] paletteIDs;
+    // Packed palette indexes in the BlockStorage#index order, null if the section is the first palette block.
+    @Nullable
+    private final CompactStorage storage;
+    private final VirtualBiome[] biomes;
+    private final int[] biomeIDs;
+    private final int hash;
+
+    private Key(VirtualBlock[] palette, @Nullable CompactStorage storage, VirtualBiome[] biomes, int[] biomeIDs) {
+      this.palette = palette;
+      this.paletteIDs = new int[palette.length];
+      for (int i = 0; i < palette.length; ++i) {
+        this.paletteIDs[i] = paletteID(palette[i]);
+      }
+
+      this.storage = storage;
+      this.biomes = biomes;
+      this.biomeIDs = biomeIDs;
+      int storageHash = storage == null ? 0 : 31 * storage.getBitsPerEntry() + Arrays.hashCode(storage.getData());
+      this.hash = 31 * (31 * Arrays.hashCode(this.paletteIDs) + storageHash) + Arrays.hashCode(biomeIDs);
+    }
+
+    private int get(int index) {
+      return this.storage == null ? 0 : this.storage.get(index);
+    }
+
+    private static Key of(BlockSection section, ChunkSnapshot chunk, int index) {
+      VirtualBiome[] biomes = new VirtualBiome[SimpleChunk.MAX_BIOMES_PER_SECTION];
+      int[] biomeIDs = new int[biomes.length];
+      for (int i = 0; i < biomes.length; ++i) {
+        biomes[i] = chunk.getBiome((i & 3) << 2, index << 4 | i >> 4 << 2, (i >> 2 & 3) << 2);
+        biomeIDs[i] = biomes[i].getID();
+      }
+
+      if (section instanceof SimpleSection simpleSection) {
+        BlockStorage sectionStorage = simpleSection.getStorage();
+        if (sectionStorage instanceof MappedBlockStorage mappedStorage) {
+          VirtualBlock[] palette = mappedStorage.getPalette();
+          if (palette != null) {
+            // The slot may be reused once its storage is collected, so the key keeps a heap copy of it.
+            return new Key(palette, mappedStorage.copyPaletteStorage(), biomes, biomeIDs);
+          }
+
+          sectionStorage = mappedStorage.getFallback();
+        }
+
+        if (sectionStorage instanceof BlockStorage19 blockStorage) {
+          VirtualBlock[] palette = blockStorage.getPalette();
+          CompactStorage storage = blockStorage.getPaletteStorage();
+          if (palette != null && (storage == null || storage instanceof BitStorage116)) {
+            return new Key(palette, storage, biomes, biomeIDs);
+          }
+        }
+      }
+
+      return pack(section, biomes, biomeIDs);
+    }
+
+    // Sections with other storages or with the direct palette are read block by block.
+    private static Key pack(BlockSection section, VirtualBiome[] biomes, int[] biomeIDs) {
+      List<VirtualBlock> palette = new ArrayList<>();
+      Int2IntOpenHashMap paletteIndexes = new Int2IntOpenHashMap();
+      paletteIndexes.defaultReturnValue(-1);
+      int[] indices = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+
+      VirtualBlock previous = null;
+      int previousIndex = -1;
+      for (int blockIndex = 0; blockIndex < indices.length; ++blockIndex) {
+        VirtualBlock block = section.getBlockAt(blockIndex & 15, blockIndex >> 8, blockIndex >> 4 & 15);
+        if (block != previous) {
+          int id = paletteID(block);
+          previousIndex = paletteIndexes.get(id);
+          if (previousIndex == -1) {
+            previousIndex = palette.size();
+            paletteIndexes.put(id, previousIndex);
+            palette.add(block);
+          }
+
+          previous = block;
+        }
+
+        indices[blockIndex] = previousIndex;
+      }
+
+      CompactStorage storage = null;
+      if (palette.size() > 1) {
+        storage = new BitStorage116(Integer.SIZE - Integer.numberOfLeadingZeros(palette.size() - 1), SimpleChunk.MAX_BLOCKS_PER_SECTION);
+        for (int i = 0; i < indices.length; ++i) {
+          storage.set(i, indices[i]);
+        }
+      }
+
+      return new Key(palette.toArray(new VirtualBlock[0]), storage, biomes, biomeIDs);
+    }
+
+    private static int paletteID(VirtualBlock block) {
+      // Network storages depend only on the block state and on the air flag (the block count),
+      // the motion blocking flag is used by the heightmaps, which are filled from the palette of the cached entry.
+      return block.getModernID() << 2 | (block.isMotionBlocking() ? 2 : 0) | (block.isAir() ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+
+      if (!(o instanceof Key key)) {
+        return false;
+      }
+
+      return this.hash == key.hash
+          && Arrays.equals(this.paletteIDs, key.paletteIDs)
+          && Arrays.equals(this.biomeIDs, key.biomeIDs)
+          && (this.storage == null
+              ? key.storage == null
+              : key.storage != null && this.storage.getBitsPerEntry() == key.storage.getBitsPerEntry()
+                  && Arrays.equals(this.storage.getData(), key.storage.getData()));
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+}
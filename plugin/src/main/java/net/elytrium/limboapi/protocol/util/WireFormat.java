@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.protocol.util;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+
+// Group of consecutive versions that encode chunk sections to the same bytes:
+// they have the same section layout and the same block state ids.
+public class WireFormat {
+
+  // Versions that change the layout of the encoded sections. (See NetworkSection, BlockStorage17, BlockStorage19 and StorageUtils)
+  private static final List<ProtocolVersion> LAYOUT_CHANGES = List.of(
+      ProtocolVersion.MINECRAFT_1_8,
+      ProtocolVersion.MINECRAFT_1_9,
+      ProtocolVersion.MINECRAFT_1_13,
+      ProtocolVersion.MINECRAFT_1_14,
+      ProtocolVersion.MINECRAFT_1_16,
+      ProtocolVersion.MINECRAFT_1_16_4,
+      ProtocolVersion.MINECRAFT_1_18,
+      ProtocolVersion.MINECRAFT_1_21_5,
+      ProtocolVersion.MINECRAFT_26_1
+  );
+  private static final Map<ProtocolVersion, WireFormat> FORMATS = new EnumMap<>(ProtocolVersion.class);
+
+  private final ProtocolVersion version;
+
+  private WireFormat(ProtocolVersion version) {
+    this.version = version;
+  }
+
+  public static void init() {
+    WireFormat format = null;
+    for (ProtocolVersion version : ProtocolVersion.SUPPORTED_VERSIONS) {
+      if (format == null || LAYOUT_CHANGES.contains(version) || !SimpleBlock.hasSameBlockStateIDs(format.version, version)) {
+        format = new WireFormat(version);
+      }
+
+      FORMATS.put(version, format);
+    }
+  }
+
+  public static WireFormat of(ProtocolVersion version) {
+    WireFormat format = FORMATS.get(version);
+    if (format == null) {
+      throw new IllegalArgumentException("Unsupported version: " + version);
+    }
+
+    return format;
+  }
+
+  public static Set<WireFormat> of(ProtocolVersion from, ProtocolVersion to) {
+    return ProtocolVersion.SUPPORTED_VERSIONS.stream()
+        .filter(version -> version.noLessThan(from) && version.noGreaterThan(to))
+        .map(WireFormat::of)
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
+  // The first version of the group, used to build the storages.
+  public ProtocolVersion getVersion() {
+    return this.version;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.server;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.limboapi.LimboAPI;
+import net.elytrium.limboapi.api.chunk.Dimension;
+import net.elytrium.limboapi.api.chunk.VirtualChunk;
+import net.elytrium.limboapi.api.chunk.data.ChunkSnapshot;
+import net.elytrium.limboapi.api.protocol.PreparedPacket;
+import net.elytrium.limboapi.protocol.packets.s2c.ChunkDataPacket;
+import net.elytrium.limboapi.protocol.util.NetworkSectionCache;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// Chunks that are sent together. The snapshots are the chunks as of the last world update, that is, as the online players have them,
+// and the prepared packet is rebuilt from them only when the batch is written after an update changed it.
+public class ChunkBatch {
+
+  private final LimboAPI plugin;
+  private final Dimension dimension;
+  private final List<VirtualChunk> chunks;
+  private final ChunkSnapshot[] snapshots;
+
+  @Nullable
+  private PreparedPacket packet;
+  // Section cache lease of the prepared packet, so a rebuilt batch releases only its own sections.
+  @Nullable
+  private NetworkSectionCache.Lease lease;
+  private boolean released;
+
+  public ChunkBatch(LimboAPI plugin, Dimension dimension, List<VirtualChunk> chunks, ChunkSnapshot[] snapshots,
+                    @Nullable PreparedPacket packet, @Nullable NetworkSectionCache.Lease lease) {
+    this.plugin = plugin;
+    this.dimension = dimension;
+    this.chunks = chunks;
+    this.snapshots = snapshots;
+    this.packet = packet;
+    this.lease = lease;
+  }
+
+  public List<VirtualChunk> getChunks() {
+    return this.chunks;
+  }
+
+  public synchronized ChunkSnapshot getSnapshot(int index) {
+    return this.snapshots[index];
+  }
+
+  public synchronized void update(int index, ChunkSnapshot snapshot) {
+    this.snapshots[index] = snapshot;
+    if (this.packet != null) {
+      PreparedPacket replaced = this.packet;
+      this.packet = null;
+      // Wait some time to ensure that the replaced packet is really written.
+      this.plugin.getServer().getScheduler().buildTask(this.plugin, replaced::release).delay(10, TimeUnit.SECONDS).schedule();
+    }
+  }
+
+  // Null if the batch is released.
+  @Nullable
+  public synchronized PreparedPacket getPacket() {
+    if (this.released) {
+      return null;
+    }
+
+    if (this.packet == null) {
+      NetworkSectionCache.Lease lease = new NetworkSectionCache.Lease();
+      PreparedPacket packet = this.plugin.createPreparedPacket();
+      for (ChunkSnapshot snapshot : this.snapshots) {
+        packet.prepare(createChunkData(snapshot, this.dimension, lease));
+      }
+
+      this.packet = packet.build();
+      // Released after the new build so that unchanged sections are taken from the cache.
+      if (this.lease != null) {
+        this.lease.release();
+      }
+
+      this.lease = lease;
+    }
+
+    return this.packet;
+  }
+
+  public synchronized void release() {
+    this.released = true;
+    if (this.packet != null) {
+      this.packet.release();
+      this.packet = null;
+    }
+
+    if (this.lease != null) {
+      this.lease.release();
+      this.lease = null;
+    }
+  }
+
+  public static ChunkDataPacket createChunkData(ChunkSnapshot snapshot, Dimension dimension, NetworkSectionCache.Lease lease) {
+    return new ChunkDataPacket(snapshot, dimension.hasLegacySkyLight(), dimension.getMaxSections(), lease);
+  }
+}
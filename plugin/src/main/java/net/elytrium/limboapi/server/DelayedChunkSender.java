@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.server;
+
+import com.velocitypowered.proxy.connection.MinecraftConnection;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import net.elytrium.limboapi.Settings;
+import net.elytrium.limboapi.api.protocol.PreparedPacket;
+
+// Sends the delayed chunk batches on the connection event loop, while the connection is writable
+// and until the configured amount of bytes per tick is reached. Batches are never split, so the last one may go over it.
+public class DelayedChunkSender implements Runnable {
+
+  private final MinecraftConnection connection;
+  private final List<ChunkBatch> batches;
+
+  private volatile int index;
+  private volatile ScheduledFuture<?> task;
+  private boolean paused;
+  private volatile boolean cancelled;
+
+  public DelayedChunkSender(MinecraftConnection connection, List<ChunkBatch> batches, int fromIndex) {
+    this.connection = connection;
+    this.batches = batches;
+    this.index = fromIndex;
+  }
+
+  public void start() {
+    this.schedule();
+  }
+
+  @Override
+  public void run() {
+    this.task = null;
+    if (this.cancelled) {
+      return;
+    }
+
+    Channel channel = this.connection.getChannel();
+    ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+    if (this.connection.isClosed() || outboundBuffer == null) {
+      this.cancelled = true;
+      return;
+    }
+
+    long sentBytes = 0;
+    int index = this.index;
+    while (index < this.batches.size() && channel.isWritable() && sentBytes < Settings.IMP.MAIN.CHUNK_BYTES_PER_TICK) {
+      // Rebuilt here if a world update has changed the batch.
+      PreparedPacket packet = this.batches.get(index++).getPacket();
+      if (packet == null) {
+        // The Limbo is disposed.
+        this.cancelled = true;
+        break;
+      }
+
+      // Called from the event loop, so the batch is already encoded into the outbound buffer after the write.
+      long pendingBytes = outboundBuffer.totalPendingWriteBytes();
+      this.connection.delayedWrite(packet);
+      sentBytes += outboundBuffer.totalPendingWriteBytes() - pendingBytes;
+    }
+
+    this.index = index;
+    this.connection.flush();
+    if (!this.cancelled && index < this.batches.size()) {
+      if (channel.isWritable()) {
+        this.schedule();
+      } else {
+        // Resumed by writabilityChanged.
+        this.paused = true;
+      }
+    }
+  }
+
+  public void writabilityChanged() {
+    if (this.paused && !this.cancelled && this.connection.getChannel().isWritable()) {
+      this.paused = false;
+      this.schedule();
+    }
+  }
+
+  public void cancel() {
+    this.cancelled = true;
+    if (this.task != null) {
+      this.task.cancel(false);
+      this.task = null;
+    }
+  }
+
+  // Amount of the batches that are not sent yet.
+  public int getQueueDepth() {
+    return this.cancelled ? 0 : this.batches.size() - this.index;
+  }
+
+  private void schedule() {
+    this.task = this.connection.eventLoop().schedule(this, 50, TimeUnit.MILLISECONDS);
+  }
+}
@@ -71,17 +71,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -94,8 +97,11 @@ import net.elytrium.limboapi.Settings;
 import net.elytrium.limboapi.api.Limbo;
 import net.elytrium.limboapi.api.LimboSessionHandler;
 import net.elytrium.limboapi.api.chunk.Dimension;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
 import net.elytrium.limboapi.api.chunk.VirtualChunk;
 import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.api.chunk.data.BlockSection;
+import net.elytrium.limboapi.api.chunk.data.ChunkSnapshot;
 import net.elytrium.limboapi.api.command.LimboCommandMeta;
 import net.elytrium.limboapi.api.player.GameMode;
 import net.elytrium.limboapi.api.protocol.PacketDirection;
@@ -108,10 +114,16 @@ import net.elytrium.limboapi.protocol.LimboProtocol;
 import net.elytrium.limboapi.protocol.packets.s2c.ChangeGameStatePacket;
 import net.elytrium.limboapi.protocol.packets.s2c.ChunkDataPacket;
 import net.elytrium.limboapi.protocol.packets.s2c.DefaultSpawnPositionPacket;
+import net.elytrium.limboapi.protocol.packets.s2c.MultiBlockChangePacket;
 import net.elytrium.limboapi.protocol.packets.s2c.PositionRotationPacket;
 import net.elytrium.limboapi.protocol.packets.s2c.TimeUpdatePacket;
 import net.elytrium.limboapi.protocol.packets.s2c.UpdateViewPositionPacket;
+import net.elytrium.limboapi.protocol.util.NetworkSectionCache;
+import net.elytrium.limboapi.protocol.util.WireFormat;
+import net.elytrium.limboapi.server.world.SimpleBlock;
 import net.elytrium.limboapi.server.world.SimpleTagManager;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunkSnapshot;
 import net.kyori.adventure.nbt.BinaryTag;
 import net.kyori.adventure.nbt.BinaryTagIO;
 import net.kyori.adventure.nbt.BinaryTagTypes;
@@ -148,6 +160,8 @@ public class LimboImpl implements Limbo {
   private final RootCommandNode<CommandSource> commandNode = new RootCommandNode<>();
   private final ReadWriteLock lock = new ReentrantReadWriteLock();
   private final List<PreparedPacket> queuedToRelease = new ArrayList<>();
+  private final List<ChunkBatch> queuedBatchesToRelease = new ArrayList<>();
+  private final Set<MinecraftConnection> connections = ConcurrentHashMap.newKeySet();
   private final List<CommandRegistrar<?>> registrars = ImmutableList.of(
       new BrigadierCommandRegistrar(this.commandNode, this.lock.writeLock()),
       new SimpleCommandRegistrar(this.commandNode, this.lock.writeLock()),
@@ -164,8 +178,10 @@ public class LimboImpl implements Limbo {
   private PreparedPacket fastRejoinPackets;
   private PreparedPacket safeRejoinPackets;
   private PreparedPacket postJoinPackets;
-  private PreparedPacket firstChunks;
-  private List<PreparedPacket> delayedChunks;
+  // The first batch is sent on spawn, the next ones are sent with delay.
+  private List<ChunkBatch> chunkBatches;
+  private Set<VirtualChunk> preparedChunks;
+  private long lastWorldUpdate;
   private PreparedPacket respawnPackets;
   protected PreparedPacket configTransitionPackets;
   protected PreparedPacket configPackets;
@@ -259,8 +275,8 @@ public class LimboImpl implements Limbo {
     configPackets.prepare(FinishedUpdatePacket.INSTANCE, ProtocolVersion.MINECRAFT_1_20_2);
     this.configPackets = configPackets.build();
 
-    this.firstChunks = this.createFirstChunks();
-    this.delayedChunks = this.createDelayedChunksPackets();
+    this.createChunks();
+
     PreparedPacket respawnPackets = this.plugin.createPreparedPacket()
         .prepare(
             this.createPlayerPosAndLook(
@@ -368,6 +384,7 @@ public class LimboImpl implements Limbo {
       synchronized (this) {
         if (!this.built) {
           List<PreparedPacket> packets = this.takeSnapshot();
+          List<ChunkBatch> batches = this.chunkBatches;
           try {
             this.refresh();
           } finally {
@@ -377,6 +394,11 @@ public class LimboImpl implements Limbo {
                 this.queuedToRelease.add(packet);
               }
             }
+
+            // The previous batches may still be sent to the online players, and they keep their sections cached for the new build.
+            if (batches != null && batches != this.chunkBatches) {
+              this.queuedBatchesToRelease.addAll(batches);
+            }
           }
         }
       }
@@ -609,6 +631,7 @@ public class LimboImpl implements Limbo {
       this.respawnPlayer(player);
     }
 
+    this.connections.add(connection);
     sessionHandler.onSpawn();
   }
 
@@ -617,34 +640,19 @@ public class LimboImpl implements Limbo {
     MinecraftConnection connection = ((ConnectedPlayer) player).getConnection();
 
     connection.delayedWrite(this.respawnPackets);
-    if (this.firstChunks != null) {
-      connection.write(this.firstChunks);
+    List<ChunkBatch> chunkBatches = this.chunkBatches;
+    PreparedPacket firstChunks = chunkBatches == null ? null : chunkBatches.get(0).getPacket();
+    if (firstChunks != null) {
+      connection.write(firstChunks);
     }
 
-    if (!this.delayedChunks.isEmpty()) {
-      AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
-      task.set(connection.eventLoop().scheduleAtFixedRate(new Runnable() {
-
-        private final List<PreparedPacket> chunksSnapshot = LimboImpl.this.delayedChunks;
-        private int index;
-
-        @Override
-        public void run() {
-          if (connection.isClosed()) {
-            task.get().cancel(false);
-            return;
-          }
-
-          connection.write(this.chunksSnapshot.get(this.index));
-          if (++this.index >= this.chunksSnapshot.size()) {
-            task.get().cancel(false);
-          }
-        }
-      }, 50, 50, TimeUnit.MILLISECONDS));
-
+    if (firstChunks != null && chunkBatches.size() > 1) {
+      DelayedChunkSender chunkSender = new DelayedChunkSender(connection, chunkBatches, 1);
       if (connection.getActiveSessionHandler() instanceof LimboSessionHandlerImpl sessionHandler) {
-        sessionHandler.setRespawnTask(task.get());
+        sessionHandler.setChunkSender(chunkSender);
       }
+
+      chunkSender.start();
     }
   }
 
@@ -653,19 +661,28 @@ public class LimboImpl implements Limbo {
     return this.currentOnline.sum();
   }
 
+  public void removeConnection(MinecraftConnection connection) {
+    this.connections.remove(connection);
+  }
+
   public void onDisconnect() {
     this.currentOnline.decrement();
 
-    if (!this.queuedToRelease.isEmpty() && this.currentOnline.sum() == 0) {
+    if ((!this.queuedToRelease.isEmpty() || !this.queuedBatchesToRelease.isEmpty()) && this.currentOnline.sum() == 0) {
       synchronized (this) {
         PreparedPacket[] packets = this.queuedToRelease.toArray(new PreparedPacket[0]);
         this.queuedToRelease.clear();
+        ChunkBatch[] batches = this.queuedBatchesToRelease.toArray(new ChunkBatch[0]);
+        this.queuedBatchesToRelease.clear();
 
         // Wait some time to ensure that queued packets is really unused
         this.plugin.getServer().getScheduler().buildTask(this.plugin, () -> {
           for (PreparedPacket packet : packets) {
             packet.release();
           }
+          for (ChunkBatch batch : batches) {
+            batch.release();
+          }
         }).delay(10, TimeUnit.SECONDS).schedule();
       }
     }
@@ -790,6 +807,134 @@ public class LimboImpl implements Limbo {
     return this;
   }
 
+  @Override
+  public synchronized void updateWorld() {
+    if (this.chunkBatches == null) {
+      return;
+    }
+
+    long updateTime = System.nanoTime();
+    Dimension dimension = this.world.getDimension();
+    int preparedBatches = this.chunkBatches.size();
+    this.addNewChunks();
+
+    // The changed blocks are sent as section updates, the chunks are sent whole only if their light, biomes or block entities are changed,
+    // or if too many blocks are changed. Changed batches are rebuilt once they are written again, so the update doesn't encode them.
+    PreparedPacket update = this.plugin.createPreparedPacket();
+    NetworkSectionCache.Lease updateLease = new NetworkSectionCache.Lease();
+    boolean changed = false;
+    for (int i = 0; i < preparedBatches; ++i) {
+      ChunkBatch batch = this.chunkBatches.get(i);
+      List<VirtualChunk> chunks = batch.getChunks();
+      for (int j = 0; j < chunks.size(); ++j) {
+        VirtualChunk chunk = chunks.get(j);
+        ChunkSnapshot changes = chunk.getPartialChunkSnapshot(this.lastWorldUpdate);
+        boolean lightChanged = Arrays.stream(changes.getLight()).anyMatch(Objects::nonNull);
+        if (!lightChanged && Arrays.stream(changes.getSections()).allMatch(Objects::isNull)) {
+          continue;
+        }
+
+        ChunkSnapshot previous = batch.getSnapshot(j);
+        ChunkSnapshot current = chunk.getFullChunkSnapshot();
+        batch.update(j, current);
+        if (lightChanged || !this.prepareBlockChanges(update, previous, current, dimension.getMaxSections())) {
+          update.prepare(ChunkBatch.createChunkData(current, dimension, updateLease));
+        }
+
+        changed = true;
+      }
+    }
+
+    for (int i = preparedBatches; i < this.chunkBatches.size(); ++i) {
+      ChunkBatch batch = this.chunkBatches.get(i);
+      for (int j = 0; j < batch.getChunks().size(); ++j) {
+        update.prepare(ChunkBatch.createChunkData(batch.getSnapshot(j), dimension, updateLease));
+      }
+
+      changed = true;
+    }
+
+    this.lastWorldUpdate = updateTime;
+    if (!changed) {
+      updateLease.release();
+      update.release();
+      return;
+    }
+
+    update.build();
+    // The update is encoded, so its sections are needed only in the cache of the rebuilt batches.
+    updateLease.release();
+    for (MinecraftConnection connection : this.connections) {
+      if (!connection.isClosed() && connection.getState() == this.localStateRegistry) {
+        connection.write(update);
+      }
+    }
+
+    // Wait some time to ensure that the update is really written.
+    this.plugin.getServer().getScheduler().buildTask(this.plugin, update::release).delay(10, TimeUnit.SECONDS).schedule();
+  }
+
+  // Adds the changed blocks of the chunk, section per packet. False if the chunk should be sent whole instead.
+  private boolean prepareBlockChanges(PreparedPacket update, ChunkSnapshot previous, ChunkSnapshot current, int maxSections) {
+    if (!(previous instanceof SimpleChunkSnapshot previousChunk) || !(current instanceof SimpleChunkSnapshot currentChunk)
+        || previousChunk.getBiomeStorage() != currentChunk.getBiomeStorage()
+        || previous.getBlockEntityEntries() != current.getBlockEntityEntries()) {
+      return false;
+    }
+
+    List<MultiBlockChangePacket> packets = new ArrayList<>();
+    short[] indexes = new short[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    VirtualBlock[] blocks = new VirtualBlock[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    int changedBlocks = 0;
+    for (int sectionY = 0; sectionY < Math.min(current.getSections().length, maxSections); ++sectionY) {
+      // Unchanged sections are shared between the snapshots.
+      BlockSection previousSection = previous.getSections()[sectionY];
+      BlockSection currentSection = current.getSections()[sectionY];
+      if (previousSection == currentSection) {
+        continue;
+      }
+
+      int count = 0;
+      for (int index = 0; index < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++index) {
+        // Same as BlockStorage.index(posX, posY, posZ).
+        int posX = index & 15;
+        int posY = index >> 8;
+        int posZ = index >> 4 & 15;
+        VirtualBlock block = currentSection == null ? SimpleBlock.AIR : currentSection.getBlockAt(posX, posY, posZ);
+        VirtualBlock previousBlock = previousSection == null ? SimpleBlock.AIR : previousSection.getBlockAt(posX, posY, posZ);
+        if (block != previousBlock && block.getModernID() != previousBlock.getModernID()) {
+          indexes[count] = (short) index;
+          blocks[count++] = block;
+        }
+      }
+
+      changedBlocks += count;
+      if (changedBlocks > SimpleChunk.MAX_BLOCKS_PER_SECTION) {
+        return false;
+      }
+
+      if (count != 0) {
+        packets.add(new MultiBlockChangePacket(
+            current.getPosX(), sectionY, current.getPosZ(), Arrays.copyOf(indexes, count), Arrays.copyOf(blocks, count)
+        ));
+      }
+    }
+
+    update.prepare(packets);
+    return true;
+  }
+
+  // Chunks created after the build are appended as the new delayed batches, the online players receive them with the update.
+  private void addNewChunks() {
+    List<VirtualChunk> newChunks = this.world.getChunks().stream().filter(chunk -> !this.preparedChunks.contains(chunk)).toList();
+    for (int from = 0; from < newChunks.size(); from += Settings.IMP.MAIN.CHUNKS_PER_TICK) {
+      List<VirtualChunk> batch = new ArrayList<>(newChunks.subList(from, Math.min(from + Settings.IMP.MAIN.CHUNKS_PER_TICK, newChunks.size())));
+      ChunkSnapshot[] snapshots = batch.stream().map(VirtualChunk::getFullChunkSnapshot).toArray(ChunkSnapshot[]::new);
+      this.chunkBatches.add(new ChunkBatch(this.plugin, this.world.getDimension(), batch, snapshots, null, null));
+      this.preparedChunks.addAll(batch);
+    }
+  }
+
   @Override
   public void dispose() {
     if (this.getCurrentOnline() == 0) {
@@ -817,12 +962,6 @@ public class LimboImpl implements Limbo {
     if (this.respawnPackets != null) {
       packets.add(this.respawnPackets);
     }
-    if (this.firstChunks != null) {
-      packets.add(this.firstChunks);
-    }
-    if (this.delayedChunks != null) {
-      packets.addAll(this.delayedChunks);
-    }
     if (this.configTransitionPackets != null) {
       packets.add(this.configTransitionPackets);
     }
@@ -835,6 +974,13 @@ public class LimboImpl implements Limbo {
 
   private void localDispose() {
     this.takeSnapshot().forEach(PreparedPacket::release);
+    if (this.chunkBatches != null) {
+      this.chunkBatches.forEach(ChunkBatch::release);
+      this.chunkBatches = null;
+    }
+
+    this.preparedChunks = null;
+
     this.built = false;
     this.brandMessages.values().forEach(PreparedPacket::release);
     this.brandMessages.clear();
@@ -1364,56 +1510,126 @@ public class LimboImpl implements Limbo {
     }
   }
 
-  private PreparedPacket createFirstChunks() {
-    PreparedPacket packet = this.plugin.createPreparedPacket();
-    List<List<VirtualChunk>> orderedChunks = this.world.getOrderedChunks();
+  private void createChunks() {
+    long startTime = System.nanoTime();
+    Dimension dimension = this.world.getDimension();
+    List<List<VirtualChunk>> batches = this.splitChunks();
+    List<ChunkSnapshot[]> snapshots = batches.stream()
+        .map(batch -> batch.stream().map(VirtualChunk::getFullChunkSnapshot).toArray(ChunkSnapshot[]::new))
+        .toList();
+    List<NetworkSectionCache.Lease> leases = new ArrayList<>(batches.size());
+    batches.forEach(batch -> leases.add(new NetworkSectionCache.Lease()));
+    List<PreparedPacket> packets = Settings.IMP.MAIN.PARALLEL_CHUNK_PREPARATION
+        ? this.prepareChunksParallel(snapshots, leases)
+        : this.prepareChunks(snapshots, leases);
+
+    List<ChunkBatch> chunkBatches = new ArrayList<>(batches.size());
+    for (int i = 0; i < batches.size(); ++i) {
+      chunkBatches.add(new ChunkBatch(this.plugin, dimension, batches.get(i), snapshots.get(i), packets.get(i), leases.get(i)));
+    }
 
-    int chunkCounter = 0;
-    for (List<VirtualChunk> chunksWithSameDistance : orderedChunks) {
-      if (++chunkCounter > Settings.IMP.MAIN.CHUNK_RADIUS_SEND_ON_SPAWN) {
-        break;
-      }
+    // Batches are patched in place by updateWorld and the new ones are appended, so the players that are receiving them get the updated ones.
+    this.chunkBatches = new CopyOnWriteArrayList<>(chunkBatches);
+    this.preparedChunks = new HashSet<>();
+    batches.forEach(this.preparedChunks::addAll);
+    this.lastWorldUpdate = startTime;
 
-      for (VirtualChunk chunk : chunksWithSameDistance) {
-        packet.prepare(this.createChunkData(chunk, this.world.getDimension()));
-      }
+    if (LimboAPI.getLogger().isDebugEnabled()) {
+      int chunkCount = batches.stream().mapToInt(List::size).sum();
+      LimboAPI.getLogger().debug("Prepared {} chunks in {} ms.", chunkCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
     }
-
-    return packet.build();
   }
 
-  private List<PreparedPacket> createDelayedChunksPackets() {
+  // The first batch is sent on spawn, the next ones are sent with delay, batch per tick.
+  private List<List<VirtualChunk>> splitChunks() {
     List<List<VirtualChunk>> orderedChunks = this.world.getOrderedChunks();
-    if (orderedChunks.size() <= Settings.IMP.MAIN.CHUNK_RADIUS_SEND_ON_SPAWN) {
-      return List.of();
-    }
+    List<List<VirtualChunk>> batches = new ArrayList<>();
 
-    List<PreparedPacket> packets = new LinkedList<>();
-    PreparedPacket packet = this.plugin.createPreparedPacket();
-    int chunkCounter = 0;
+    List<VirtualChunk> batch = new ArrayList<>();
+    Iterator<List<VirtualChunk>> distanceIterator = orderedChunks.iterator();
+    for (int i = 0; i < Settings.IMP.MAIN.CHUNK_RADIUS_SEND_ON_SPAWN && distanceIterator.hasNext(); i++) {
+      batch.addAll(distanceIterator.next());
+    }
 
-    Iterator<List<VirtualChunk>> distanceIterator = orderedChunks.listIterator();
-    for (int i = 0; i < Settings.IMP.MAIN.CHUNK_RADIUS_SEND_ON_SPAWN; i++) {
-      distanceIterator.next();
+    batches.add(batch);
+    if (!distanceIterator.hasNext()) {
+      return batches;
     }
 
+    batch = new ArrayList<>();
     while (distanceIterator.hasNext()) {
       for (VirtualChunk chunk : distanceIterator.next()) {
-        if (++chunkCounter > Settings.IMP.MAIN.CHUNKS_PER_TICK) {
-          packets.add(packet.build());
-          packet = this.plugin.createPreparedPacket();
-          chunkCounter = 0;
+        if (batch.size() >= Settings.IMP.MAIN.CHUNKS_PER_TICK) {
+          batches.add(batch);
+          batch = new ArrayList<>();
         }
 
-        packet.prepare(this.createChunkData(chunk, this.world.getDimension()));
+        batch.add(chunk);
       }
     }
 
-    packets.add(packet.build());
+    batches.add(batch);
+    return batches;
+  }
+
+  private List<PreparedPacket> prepareChunks(List<ChunkSnapshot[]> batches, List<NetworkSectionCache.Lease> leases) {
+    Dimension dimension = this.world.getDimension();
+    List<PreparedPacket> packets = new ArrayList<>(batches.size());
+    for (int i = 0; i < batches.size(); ++i) {
+      PreparedPacket packet = this.plugin.createPreparedPacket();
+      for (ChunkSnapshot chunk : batches.get(i)) {
+        packet.prepare(ChunkBatch.createChunkData(chunk, dimension, leases.get(i)));
+      }
+
+      packets.add(packet.build());
+    }
 
     return packets;
   }
 
+  private List<PreparedPacket> prepareChunksParallel(List<ChunkSnapshot[]> batches, List<NetworkSectionCache.Lease> leases) {
+    ForkJoinPool pool = this.plugin.getChunkPreparationPool();
+    Dimension dimension = this.world.getDimension();
+    Set<WireFormat> formats = WireFormat.of(this.plugin.getPrepareMinVersion(), this.plugin.getPrepareMaxVersion());
+
+    // Section cache lookups and heightmaps, task per chunk.
+    List<List<ForkJoinTask<ChunkDataPacket>>> chunkTasks = new ArrayList<>(batches.size());
+    for (int i = 0; i < batches.size(); ++i) {
+      NetworkSectionCache.Lease lease = leases.get(i);
+      chunkTasks.add(Arrays.stream(batches.get(i)).map(chunk -> pool.submit(() -> ChunkBatch.createChunkData(chunk, dimension, lease))).toList());
+    }
+
+    List<List<ChunkDataPacket>> chunkPackets = chunkTasks.stream()
+        .map(tasks -> tasks.stream().map(ForkJoinTask::join).toList())
+        .toList();
+
+    // Section storages, task per chunk and wire format.
+    List<ForkJoinTask<?>> storageTasks = new ArrayList<>();
+    for (List<ChunkDataPacket> batch : chunkPackets) {
+      for (ChunkDataPacket chunkPacket : batch) {
+        for (WireFormat format : formats) {
+          storageTasks.add(pool.submit(() -> chunkPacket.prepareSections(format.getVersion())));
+        }
+      }
+    }
+
+    storageTasks.forEach(ForkJoinTask::join);
+
+    // Encoding and compression, task per batch. The results are kept in the distance order.
+    List<ForkJoinTask<PreparedPacket>> packetTasks = chunkPackets.stream()
+        .map(batch -> pool.submit(() -> {
+          PreparedPacket packet = this.plugin.createPreparedPacket();
+          for (ChunkDataPacket chunkPacket : batch) {
+            packet.prepare(chunkPacket);
+          }
+
+          return packet.build();
+        }))
+        .toList();
+
+    return packetTasks.stream().map(ForkJoinTask::join).toList();
+  }
+
   // From Velocity.
   private List<MinecraftPacket> createFastClientServerSwitch(JoinGamePacket joinGame, ProtocolVersion version) {
     // In order to handle switching to another server, you will need to send two packets:
@@ -1491,10 +1707,6 @@ public class LimboImpl implements Limbo {
     return new UpdateViewPositionPacket(posX >> 4, posZ >> 4);
   }
 
-  private ChunkDataPacket createChunkData(VirtualChunk chunk, Dimension dimension) {
-    return new ChunkDataPacket(chunk.getFullChunkSnapshot(), dimension.hasLegacySkyLight(), dimension.getMaxSections());
-  }
-
   public Integer getReadTimeout() {
     return this.readTimeout;
   }
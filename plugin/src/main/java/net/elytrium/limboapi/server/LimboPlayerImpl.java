@@ -367,6 +367,16 @@ public class LimboPlayerImpl implements LimboPlayer {
     }
   }
 
+  @Override
+  public int getQueuedChunkBatches() {
+    LimboSessionHandlerImpl handler = (LimboSessionHandlerImpl) this.connection.getActiveSessionHandler();
+    if (handler != null) {
+      return handler.getQueuedChunkBatches();
+    } else {
+      return 0;
+    }
+  }
+
   @Override
   public void setWorldTime(long ticks) {
     this.writePacketAndFlush(new TimeUpdatePacket(ticks, ticks));
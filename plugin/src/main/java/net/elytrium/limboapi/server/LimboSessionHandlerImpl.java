@@ -90,7 +90,7 @@ public class LimboSessionHandlerImpl implements MinecraftSessionHandler {
   private String brand;
   private ScheduledFuture<?> keepAliveTask;
   private ScheduledFuture<?> chatSessionTimeoutTask;
-  private ScheduledFuture<?> respawnTask;
+  private DelayedChunkSender chunkSender;
   private long keepAliveKey;
   private boolean keepAlivePending;
   private int keepAlivesSkipped;
@@ -392,6 +392,10 @@ public class LimboSessionHandlerImpl implements MinecraftSessionHandler {
         LimboAPI.getLogger().info("{} is not writable, not auto-reading", this.player);
       }
     }
+
+    if (this.chunkSender != null) {
+      this.chunkSender.writabilityChanged();
+    }
   }
 
   private void kickTooBigPacket(String type, int length) {
@@ -407,10 +411,11 @@ public class LimboSessionHandlerImpl implements MinecraftSessionHandler {
       this.keepAliveTask.cancel(true);
     }
 
-    if (this.respawnTask != null) {
-      this.respawnTask.cancel(true);
+    if (this.chunkSender != null) {
+      this.chunkSender.cancel();
     }
 
+    this.limbo.removeConnection(this.player.getConnection());
     if (this.loaded) {
       this.limbo.onDisconnect();
       this.callback.onDisconnect();
@@ -485,12 +490,17 @@ public class LimboSessionHandlerImpl implements MinecraftSessionHandler {
     this.joinGameTriggered = joinGameTriggered;
   }
 
-  public void setRespawnTask(ScheduledFuture<?> respawnTask) {
-    if (this.respawnTask != null) {
-      this.respawnTask.cancel(true);
+  public void setChunkSender(DelayedChunkSender chunkSender) {
+    if (this.chunkSender != null) {
+      this.chunkSender.cancel();
     }
 
-    this.respawnTask = respawnTask;
+    this.chunkSender = chunkSender;
+  }
+
+  public int getQueuedChunkBatches() {
+    DelayedChunkSender chunkSender = this.chunkSender;
+    return chunkSender == null ? 0 : chunkSender.getQueueDepth();
   }
 
   public ClientSettingsPacket getSettings() {
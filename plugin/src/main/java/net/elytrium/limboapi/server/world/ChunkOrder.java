@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.server.world;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import net.elytrium.limboapi.api.chunk.VirtualChunk;
+
+// Chunks sorted by the distance to the center, nearest first, chunks at the same distance go around the center like a spiral.
+public class ChunkOrder implements Iterable<VirtualChunk> {
+
+  private final List<VirtualChunk> chunks;
+  // Chunks split by the (int) distance to the center, empty rings are kept, so the ring index is the distance.
+  private final List<List<VirtualChunk>> rings;
+
+  public ChunkOrder(Collection<? extends VirtualChunk> chunks, int centerX, int centerZ) {
+    VirtualChunk[] array = chunks.toArray(new VirtualChunk[0]);
+    long[] distances = new long[array.length];
+    int[] angles = new int[array.length];
+    int[] order = new int[array.length];
+    for (int i = 0; i < array.length; ++i) {
+      long diffX = array[i].getPosX() - centerX;
+      long diffZ = array[i].getPosZ() - centerZ;
+      distances[i] = diffX * diffX + diffZ * diffZ;
+      angles[i] = (int) ((Math.atan2(diffZ, diffX) + Math.PI) * (0xFFFF / (2 * Math.PI)));
+      order[i] = i;
+    }
+
+    IntArrays.quickSort(order, (first, second) -> {
+      int result = Long.compare(distances[first], distances[second]);
+      if (result == 0) {
+        result = Integer.compare(angles[first], angles[second]);
+      }
+
+      if (result == 0) {
+        result = Integer.compare(array[first].getPosX(), array[second].getPosX());
+      }
+
+      return result == 0 ? Integer.compare(array[first].getPosZ(), array[second].getPosZ()) : result;
+    });
+
+    VirtualChunk[] sorted = new VirtualChunk[array.length];
+    for (int i = 0; i < sorted.length; ++i) {
+      sorted[i] = array[order[i]];
+    }
+
+    this.chunks = List.of(sorted);
+
+    List<List<VirtualChunk>> rings = new ArrayList<>();
+    int ringStart = 0;
+    for (int i = 0; i < sorted.length; ++i) {
+      int ring = (int) Math.sqrt(distances[order[i]]);
+      while (rings.size() < ring) {
+        rings.add(this.chunks.subList(ringStart, i));
+        ringStart = i;
+      }
+    }
+
+    if (sorted.length != 0) {
+      rings.add(this.chunks.subList(ringStart, sorted.length));
+    }
+
+    this.rings = List.copyOf(rings);
+  }
+
+  public List<VirtualChunk> getChunks() {
+    return this.chunks;
+  }
+
+  public List<List<VirtualChunk>> getRings() {
+    return this.rings;
+  }
+
+  @Override
+  public Iterator<VirtualChunk> iterator() {
+    return this.chunks.iterator();
+  }
+}
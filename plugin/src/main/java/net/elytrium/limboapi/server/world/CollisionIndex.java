@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.server.world;
+
+import java.util.Collection;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.VirtualChunk;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+
+// Bit per block indexes of the solid and the motion blocking blocks, over the chunks the world had when the index was built.
+public class CollisionIndex {
+
+  private static final int SECTIONS = 16;
+
+  private final int minChunkX;
+  private final int minChunkZ;
+  private final int sizeX;
+  private final int sizeZ;
+  // Section bitmaps of 4096 bits, null if there are no such blocks in the section.
+  private final long[][] solid;
+  private final long[][] motionBlocking;
+
+  private CollisionIndex(int minChunkX, int minChunkZ, int sizeX, int sizeZ) {
+    this.minChunkX = minChunkX;
+    this.minChunkZ = minChunkZ;
+    this.sizeX = sizeX;
+    this.sizeZ = sizeZ;
+    this.solid = new long[sizeX * sizeZ * SECTIONS][];
+    this.motionBlocking = new long[sizeX * sizeZ * SECTIONS][];
+  }
+
+  public static CollisionIndex build(Collection<? extends VirtualChunk> chunks) {
+    int minChunkX = Integer.MAX_VALUE;
+    int minChunkZ = Integer.MAX_VALUE;
+    int maxChunkX = Integer.MIN_VALUE;
+    int maxChunkZ = Integer.MIN_VALUE;
+    for (VirtualChunk chunk : chunks) {
+      minChunkX = Math.min(minChunkX, chunk.getPosX());
+      minChunkZ = Math.min(minChunkZ, chunk.getPosZ());
+      maxChunkX = Math.max(maxChunkX, chunk.getPosX());
+      maxChunkZ = Math.max(maxChunkZ, chunk.getPosZ());
+    }
+
+    if (chunks.isEmpty()) {
+      return new CollisionIndex(0, 0, 0, 0);
+    }
+
+    CollisionIndex index = new CollisionIndex(minChunkX, minChunkZ, maxChunkX - minChunkX + 1, maxChunkZ - minChunkZ + 1);
+    for (VirtualChunk chunk : chunks) {
+      index.update(chunk, 0, SECTIONS - 1);
+    }
+
+    return index;
+  }
+
+  // Recomputes the bitmaps of the sections of the chunk. Returns false if the chunk is outside of the index, so the index has to be rebuilt.
+  public boolean update(VirtualChunk chunk, int fromSection, int toSection) {
+    VirtualBlock[] blocks = new VirtualBlock[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    for (int sectionY = Math.max(fromSection, 0); sectionY <= Math.min(toSection, SECTIONS - 1); ++sectionY) {
+      int section = this.getSection(chunk.getPosX() << 4, sectionY << 4, chunk.getPosZ() << 4);
+      if (section == -1) {
+        return false;
+      }
+
+      if (chunk instanceof SimpleChunk simpleChunk) {
+        simpleChunk.getBlocks(0, sectionY << 4, 0, 15, sectionY << 4 | 15, 15, blocks, 0, 16, 256);
+      } else {
+        for (int i = 0; i < blocks.length; ++i) {
+          blocks[i] = chunk.getBlock(i & 15, sectionY << 4 | i >> 8, i >> 4 & 15);
+        }
+      }
+
+      // The bitmaps are replaced as a whole, so the readers never see a partially updated section.
+      long[] solid = null;
+      long[] motionBlocking = null;
+      for (int bit = 0; bit < blocks.length; ++bit) {
+        if (blocks[bit].isSolid()) {
+          if (solid == null) {
+            solid = new long[SimpleChunk.MAX_BLOCKS_PER_SECTION / Long.SIZE];
+          }
+
+          solid[bit >> 6] |= 1L << bit;
+        }
+        if (blocks[bit].isMotionBlocking()) {
+          if (motionBlocking == null) {
+            motionBlocking = new long[SimpleChunk.MAX_BLOCKS_PER_SECTION / Long.SIZE];
+          }
+
+          motionBlocking[bit >> 6] |= 1L << bit;
+        }
+      }
+
+      this.solid[section] = solid;
+      this.motionBlocking[section] = motionBlocking;
+    }
+
+    return true;
+  }
+
+  // The box is inclusive. Returns false if a part of the box is outside of the index, so the index has to be rebuilt.
+  public boolean fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, VirtualBlock block) {
+    boolean solid = block.isSolid();
+    boolean motionBlocking = block.isMotionBlocking();
+    for (int posY = Math.max(Math.min(fromY, toY), 0); posY <= Math.min(Math.max(fromY, toY), (SECTIONS << 4) - 1); ++posY) {
+      for (int posZ = Math.min(fromZ, toZ); posZ <= Math.max(fromZ, toZ); ++posZ) {
+        for (int posX = Math.min(fromX, toX); posX <= Math.max(fromX, toX); ++posX) {
+          int section = this.getSection(posX, posY, posZ);
+          if (section == -1) {
+            return false;
+          }
+
+          int bit = getBit(posX, posY, posZ);
+          set(this.solid, section, bit, solid);
+          set(this.motionBlocking, section, bit, motionBlocking);
+        }
+      }
+    }
+
+    return true;
+  }
+
+  // Returns false if the position is outside of the index, so the index has to be rebuilt.
+  public boolean update(int posX, int posY, int posZ, VirtualBlock block) {
+    int section = this.getSection(posX, posY, posZ);
+    if (section == -1) {
+      return posY < 0 || posY >= SECTIONS << 4;
+    }
+
+    int bit = getBit(posX, posY, posZ);
+    set(this.solid, section, bit, block.isSolid());
+    set(this.motionBlocking, section, bit, block.isMotionBlocking());
+    return true;
+  }
+
+  public boolean isSolid(int posX, int posY, int posZ) {
+    return this.get(this.solid, posX, posY, posZ);
+  }
+
+  public boolean isMotionBlocking(int posX, int posY, int posZ) {
+    return this.get(this.motionBlocking, posX, posY, posZ);
+  }
+
+  // The box is inclusive, blocks are treated as full cubes.
+  public boolean hasSolid(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+    for (int posY = Math.max(fromY, 0); posY <= Math.min(toY, (SECTIONS << 4) - 1); ++posY) {
+      for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+        // Blocks of a row in a section are 16 bits of the same long.
+        for (int posX = fromX; posX <= toX; posX = (posX | 15) + 1) {
+          int section = this.getSection(posX, posY, posZ);
+          if (section == -1 || this.solid[section] == null) {
+            continue;
+          }
+
+          int bit = getBit(posX, posY, posZ);
+          int length = Math.min(toX, posX | 15) - posX + 1;
+          if ((this.solid[section][bit >> 6] >>> (bit & 63) & (1L << length) - 1) != 0) {
+            return true;
+          }
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private boolean get(long[][] bitmaps, int posX, int posY, int posZ) {
+    int section = this.getSection(posX, posY, posZ);
+    if (section == -1) {
+      return false;
+    }
+
+    long[] bitmap = bitmaps[section];
+    if (bitmap == null) {
+      return false;
+    }
+
+    int bit = getBit(posX, posY, posZ);
+    return (bitmap[bit >> 6] & 1L << bit) != 0;
+  }
+
+  private int getSection(int posX, int posY, int posZ) {
+    int chunkX = (posX >> 4) - this.minChunkX;
+    int chunkZ = (posZ >> 4) - this.minChunkZ;
+    if (chunkX < 0 || chunkX >= this.sizeX || chunkZ < 0 || chunkZ >= this.sizeZ || posY < 0 || posY >= SECTIONS << 4) {
+      return -1;
+    }
+
+    return (chunkX * this.sizeZ + chunkZ) * SECTIONS + (posY >> 4);
+  }
+
+  private static int getBit(int posX, int posY, int posZ) {
+    return (posY & 15) << 8 | (posZ & 15) << 4 | posX & 15;
+  }
+
+  private static void set(long[][] bitmaps, int section, int bit, boolean value) {
+    long[] bitmap = bitmaps[section];
+    if (value) {
+      if (bitmap == null) {
+        bitmap = new long[SimpleChunk.MAX_BLOCKS_PER_SECTION / Long.SIZE];
+        bitmaps[section] = bitmap;
+      }
+
+      bitmap[bit >> 6] |= 1L << bit;
+    } else if (bitmap != null) {
+      bitmap[bit >> 6] &= ~(1L << bit);
+    }
+  }
+}
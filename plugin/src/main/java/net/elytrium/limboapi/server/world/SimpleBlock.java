@@ -49,8 +49,17 @@ public class SimpleBlock implements VirtualBlock {
   private static final Map<String, Map<String, String>> DEFAULT_PROPERTIES_MAP = new HashMap<>();
   private static final Map<String, String> MODERN_ID_REMAP = new HashMap<>();
 
+  // Blocks that always contain water or lava, the other ones only while waterlogged.
+  private static final Set<String> FLUID_BLOCKS = Set.of(
+      "minecraft:water", "minecraft:lava", "minecraft:bubble_column",
+      "minecraft:kelp", "minecraft:kelp_plant", "minecraft:seagrass", "minecraft:tall_seagrass"
+  );
+
   public static final SimpleBlock AIR = new SimpleBlock(false, true, false, "minecraft:air", (short) 0, (short) 0);
 
+  // Changes with any block state id, so the stored ids are known to be valid for the loaded mapping.
+  private static int blockStateMappingHash;
+
   @SuppressWarnings("unchecked")
   public static void init() {
     LinkedTreeMap<String, String> blocks = GSON.fromJson(
@@ -81,6 +90,12 @@ public class SimpleBlock implements VirtualBlock {
         new InputStreamReader(Objects.requireNonNull(LimboAPI.class.getResourceAsStream("/mapping/blockstates.json")), StandardCharsets.UTF_8),
         LinkedTreeMap.class
     );
+    int mappingHash = 0;
+    for (Map.Entry<String, String> entry : blockStates.entrySet()) {
+      mappingHash = 31 * (31 * mappingHash + entry.getKey().hashCode()) + entry.getValue().hashCode();
+    }
+
+    blockStateMappingHash = mappingHash;
     blockStates.forEach((key, value) -> {
       MODERN_BLOCK_STATE_PROTOCOL_ID_MAP.put(Short.valueOf(value), key);
 
@@ -244,6 +259,31 @@ public class SimpleBlock implements VirtualBlock {
     return this.motionBlocking;
   }
 
+  public static boolean hasSameBlockStateIDs(ProtocolVersion first, ProtocolVersion second) {
+    return Objects.equals(MODERN_BLOCK_STATE_IDS_MAP.get(first), MODERN_BLOCK_STATE_IDS_MAP.get(second));
+  }
+
+  public static int getBlockStateMappingHash() {
+    return blockStateMappingHash;
+  }
+
+  // Namespaced id with the properties of the block state, e.g. minecraft:oak_log[axis=y].
+  public static String getStateString(VirtualBlock block) {
+    String state = MODERN_BLOCK_STATE_PROTOCOL_ID_MAP.get(block.getModernID());
+    return state == null ? block.getModernStringID() : state;
+  }
+
+  // Block states with a fluid in them, sent as the section fluid count since 26.1.
+  public static boolean isFluid(VirtualBlock block) {
+    String state = getStateString(block);
+    if (state == null) {
+      return false;
+    }
+
+    int propertiesStart = state.indexOf('[');
+    return FLUID_BLOCKS.contains(propertiesStart == -1 ? state : state.substring(0, propertiesStart)) || state.contains("waterlogged=true");
+  }
+
   public static VirtualBlock fromModernID(String modernID) {
     String[] deserializedModernId = modernID.split("[\\[\\]]");
     if (deserializedModernId.length < 2) {
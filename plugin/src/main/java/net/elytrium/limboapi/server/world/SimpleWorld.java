@@ -17,14 +17,21 @@
 
 package net.elytrium.limboapi.server.world;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import com.velocitypowered.api.network.ProtocolVersion;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import net.elytrium.limboapi.api.chunk.Dimension;
 import net.elytrium.limboapi.api.chunk.VirtualBiome;
@@ -32,19 +39,34 @@ import net.elytrium.limboapi.api.chunk.VirtualBlock;
 import net.elytrium.limboapi.api.chunk.VirtualBlockEntity;
 import net.elytrium.limboapi.api.chunk.VirtualChunk;
 import net.elytrium.limboapi.api.chunk.VirtualWorld;
+import net.elytrium.limboapi.api.chunk.WorldStorageType;
+import net.elytrium.limboapi.api.chunk.data.BlockStorage;
+import net.elytrium.limboapi.api.chunk.util.CompactStorage;
 import net.elytrium.limboapi.material.Biome;
+import net.elytrium.limboapi.mcprotocollib.BitStorage116;
+import net.elytrium.limboapi.protocol.data.BlockStorage19;
+import net.elytrium.limboapi.protocol.data.MappedBlockStorage;
+import net.elytrium.limboapi.server.world.chunk.MappedSectionStore;
 import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import net.elytrium.limboapi.server.world.chunk.SimpleSection;
 import net.kyori.adventure.nbt.CompoundBinaryTag;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class SimpleWorld implements VirtualWorld {
 
-  private final Map<Long, SimpleChunk> chunks = new HashMap<>();
-  private final List<List<VirtualChunk>> distanceChunkMap = new ArrayList<>();
+  private static final int LOCK_STRIPES = 64;
+
+  // Chunks are split into stripes, every stripe is also the lock of its chunks while the world is built concurrently.
+  private final ChunkStripe[] stripes;
+  private final boolean concurrent;
+  @Nullable
+  private final Supplier<BlockStorage> storageFactory;
   @NonNull
   private final Dimension dimension;
   private final VirtualBiome defaultBiome;
+  // Runs the collision index builds, so they don't block the thread that reads the index.
+  private final Executor backgroundExecutor;
 
   private final double spawnX;
   private final double spawnY;
@@ -52,7 +74,48 @@ public class SimpleWorld implements VirtualWorld {
   private final float yaw;
   private final float pitch;
 
+  // The last chunk returned by getChunkOrNew, most of the writes go to the same chunk in a row. Not used by concurrent worlds.
+  private SimpleChunk lastChunk;
+  // Chunk order around the spawn, reset when a chunk is added. The counter tells the order builds about the chunks added meanwhile.
+  private final AtomicLong addedChunks = new AtomicLong();
+  private volatile ChunkOrder spawnOrder;
+  private volatile boolean frozen;
+  // Built in the background once enabled, dropped by the writes outside of the indexed chunks.
+  // The writes update the bitmaps of the published index in place and move the modification counter.
+  private final AtomicLong modifications = new AtomicLong();
+  private final AtomicBoolean collisionIndexBuilding = new AtomicBoolean();
+  private volatile boolean collisionIndexEnabled;
+  private volatile CollisionIndex collisionIndex;
+
   public SimpleWorld(@NonNull Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch) {
+    this(dimension, posX, posY, posZ, yaw, pitch, false);
+  }
+
+  public SimpleWorld(@NonNull Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch, boolean concurrent) {
+    this(dimension, posX, posY, posZ, yaw, pitch, concurrent, WorldStorageType.HEAP);
+  }
+
+  public SimpleWorld(@NonNull Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch,
+                     boolean concurrent, WorldStorageType storageType) {
+    this(dimension, posX, posY, posZ, yaw, pitch, concurrent, storageType, ForkJoinPool.commonPool());
+  }
+
+  public SimpleWorld(@NonNull Dimension dimension, double posX, double posY, double posZ, float yaw, float pitch,
+                     boolean concurrent, WorldStorageType storageType, Executor backgroundExecutor) {
+    if (storageType == WorldStorageType.MAPPED) {
+      MappedSectionStore store = new MappedSectionStore();
+      this.storageFactory = () -> new MappedBlockStorage(store);
+    } else {
+      this.storageFactory = null;
+    }
+
+    this.stripes = new ChunkStripe[concurrent ? LOCK_STRIPES : 1];
+    for (int i = 0; i < this.stripes.length; ++i) {
+      this.stripes[i] = new ChunkStripe();
+    }
+
+    this.concurrent = concurrent;
+    this.backgroundExecutor = backgroundExecutor;
     this.dimension = dimension;
     this.defaultBiome = Biome.of(dimension.getDefaultBiome());
 
@@ -68,12 +131,145 @@ public class SimpleWorld implements VirtualWorld {
 
   @Override
   public void setBlock(int posX, int posY, int posZ, @Nullable VirtualBlock block) {
-    this.getChunkOrNew(posX, posZ).setBlock(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), block);
+    SimpleChunk chunk = this.getChunkOrNew(posX, posZ);
+    this.withLock(chunk, () -> {
+      chunk.setBlock(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), block);
+      this.updateCollisionIndex(index -> index.update(posX, posY, posZ, block == null ? SimpleBlock.AIR : block));
+    });
+  }
+
+  @Override
+  public void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @Nullable VirtualBlock block) {
+    int minX = Math.min(fromX, toX);
+    int minZ = Math.min(fromZ, toZ);
+    int sizeX = Math.max(fromX, toX) - minX + 1;
+    int sizeZ = Math.max(fromZ, toZ) - minZ + 1;
+    this.forEachChunk(minX, minZ, sizeX, sizeZ, (chunkMinX, chunkMinZ, chunkMaxX, chunkMaxZ, offset) -> {
+      SimpleChunk chunk = this.getChunkOrNew(chunkMinX, chunkMinZ);
+      this.withLock(chunk, () -> {
+        chunk.fill(
+            getChunkCoordinate(chunkMinX), fromY, getChunkCoordinate(chunkMinZ), getChunkCoordinate(chunkMaxX), toY, getChunkCoordinate(chunkMaxZ), block
+        );
+        this.updateCollisionIndex(index -> index.fill(chunkMinX, fromY, chunkMinZ, chunkMaxX, toY, chunkMaxZ, block == null ? SimpleBlock.AIR : block));
+      });
+    });
+  }
+
+  @Override
+  public void replace(@NonNull VirtualBlock from, @Nullable VirtualBlock to) {
+    this.checkNotFrozen();
+    VirtualBlock block = to == null ? SimpleBlock.AIR : to;
+    // The index doesn't change if the blocks have the same flags.
+    boolean updateIndex = from.isSolid() != block.isSolid() || from.isMotionBlocking() != block.isMotionBlocking();
+    for (ChunkStripe stripe : this.stripes) {
+      synchronized (stripe) {
+        for (SimpleChunk chunk : stripe.chunks.values()) {
+          chunk.replace(from, to);
+          if (updateIndex) {
+            this.updateCollisionIndex(index -> index.update(chunk, 0, Integer.MAX_VALUE));
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void copy(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, int destX, int destY, int destZ) {
+    int minX = Math.min(fromX, toX);
+    int minY = Math.min(fromY, toY);
+    int minZ = Math.min(fromZ, toZ);
+    int sizeX = Math.max(fromX, toX) - minX + 1;
+    int sizeY = Math.max(fromY, toY) - minY + 1;
+    int sizeZ = Math.max(fromZ, toZ) - minZ + 1;
+    int strideY = Math.multiplyExact(sizeX, sizeZ);
+
+    // The whole region is read before anything is written, so the source and the destination may overlap.
+    VirtualBlock[] blocks = new VirtualBlock[Math.multiplyExact(strideY, sizeY)];
+    Arrays.fill(blocks, SimpleBlock.AIR);
+    this.forEachChunk(minX, minZ, sizeX, sizeZ, (chunkMinX, chunkMinZ, chunkMaxX, chunkMaxZ, offset) -> {
+      SimpleChunk chunk = this.getChunk(chunkMinX, chunkMinZ);
+      if (chunk != null) {
+        this.withLock(chunk, () -> chunk.getBlocks(
+            getChunkCoordinate(chunkMinX), minY, getChunkCoordinate(chunkMinZ),
+            getChunkCoordinate(chunkMaxX), minY + sizeY - 1, getChunkCoordinate(chunkMaxZ),
+            blocks, offset, sizeX, strideY
+        ));
+      }
+    });
+
+    this.forEachChunk(destX, destZ, sizeX, sizeZ, (chunkMinX, chunkMinZ, chunkMaxX, chunkMaxZ, offset) -> {
+      SimpleChunk chunk = this.getChunkOrNew(chunkMinX, chunkMinZ);
+      this.withLock(chunk, () -> {
+        chunk.setBlocks(
+            getChunkCoordinate(chunkMinX), destY, getChunkCoordinate(chunkMinZ),
+            getChunkCoordinate(chunkMaxX), destY + sizeY - 1, getChunkCoordinate(chunkMaxZ),
+            blocks, offset, sizeX, strideY
+        );
+        this.updateCollisionIndex(index -> index.update(chunk, destY >> 4, destY + sizeY - 1 >> 4));
+      });
+    });
+  }
+
+  // Palette indices are in the BlockStorage#index order. Sections may be created on any thread and attached later with setSection.
+  public SimpleSection createSection(VirtualBlock[] palette, int[] indices) {
+    SimpleSection section = this.storageFactory == null ? new SimpleSection() : new SimpleSection(this.storageFactory.get());
+    section.setPaletted(palette, indices);
+    return section;
+  }
+
+  // Packed palette indexes are adopted as they are if they have the layout of the section storage, see BlockStorage19#ofPacked.
+  public SimpleSection createSection(VirtualBlock[] palette, @Nullable CompactStorage storage) {
+    if (storage != null && this.storageFactory == null && storage instanceof BitStorage116
+        && storage.getBitsPerEntry() >= 4 && storage.getBitsPerEntry() <= 8) {
+      return new SimpleSection(BlockStorage19.ofPacked(ProtocolVersion.MINECRAFT_1_17, palette, storage));
+    }
+
+    int[] indices = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    if (storage != null) {
+      for (int i = 0; i < indices.length; ++i) {
+        indices[i] = storage.get(i);
+      }
+    }
+
+    return this.createSection(palette, indices);
+  }
+
+  public void setSection(int chunkX, int sectionY, int chunkZ, SimpleSection section) {
+    SimpleChunk chunk = this.getChunkOrNew(chunkX << 4, chunkZ << 4);
+    this.withLock(chunk, () -> {
+      chunk.setSection(sectionY << 4, section);
+      this.updateCollisionIndex(index -> index.update(chunk, sectionY, sectionY));
+    });
+  }
+
+  // Runs the action under the chunk lock, for the bulk changes that are not covered by the VirtualWorld methods.
+  public void modifyChunk(int posX, int posZ, Consumer<SimpleChunk> action) {
+    SimpleChunk chunk = this.getChunkOrNew(posX, posZ);
+    this.withLock(chunk, () -> {
+      action.accept(chunk);
+      this.updateCollisionIndex(index -> index.update(chunk, 0, Integer.MAX_VALUE));
+    });
+  }
+
+  // Splits the region into per-chunk columns, the offset is the index of the column corner in the region array.
+  private void forEachChunk(int minX, int minZ, int sizeX, int sizeZ, ChunkColumnConsumer consumer) {
+    int maxX = minX + sizeX - 1;
+    int maxZ = minZ + sizeZ - 1;
+    for (int chunkX = getChunkXZ(minX); chunkX <= getChunkXZ(maxX); ++chunkX) {
+      for (int chunkZ = getChunkXZ(minZ); chunkZ <= getChunkXZ(maxZ); ++chunkZ) {
+        int chunkMinX = Math.max(minX, chunkX << 4);
+        int chunkMinZ = Math.max(minZ, chunkZ << 4);
+        consumer.accept(
+            chunkMinX, chunkMinZ, Math.min(maxX, chunkX << 4 | 15), Math.min(maxZ, chunkZ << 4 | 15), (chunkMinZ - minZ) * sizeX + chunkMinX - minX
+        );
+      }
+    }
   }
 
   @Override
   public void setBlockEntity(int posX, int posY, int posZ, @Nullable CompoundBinaryTag nbt, @Nullable VirtualBlockEntity blockEntity) {
-    this.getChunkOrNew(posX, posZ).setBlockEntity(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), nbt, blockEntity);
+    SimpleChunk chunk = this.getChunkOrNew(posX, posZ);
+    this.withLock(chunk, () -> chunk.setBlockEntity(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), nbt, blockEntity));
   }
 
   @NonNull
@@ -82,14 +278,104 @@ public class SimpleWorld implements VirtualWorld {
     return this.chunkAction(posX, posZ, chunk -> chunk.getBlock(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ)), () -> SimpleBlock.AIR);
   }
 
+  @Override
+  public boolean isSolid(int posX, int posY, int posZ) {
+    CollisionIndex index = this.getCollisionIndex();
+    return index == null ? this.getBlock(posX, posY, posZ).isSolid() : index.isSolid(posX, posY, posZ);
+  }
+
+  @Override
+  public boolean isMotionBlocking(int posX, int posY, int posZ) {
+    CollisionIndex index = this.getCollisionIndex();
+    return index == null ? this.getBlock(posX, posY, posZ).isMotionBlocking() : index.isMotionBlocking(posX, posY, posZ);
+  }
+
+  @Override
+  public boolean intersectsSolid(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+    // Blocks are treated as full cubes, a box touching a block face doesn't intersect it.
+    int fromX = (int) Math.floor(minX);
+    int fromY = (int) Math.floor(minY);
+    int fromZ = (int) Math.floor(minZ);
+    int toX = (int) Math.ceil(maxX) - 1;
+    int toY = (int) Math.ceil(maxY) - 1;
+    int toZ = (int) Math.ceil(maxZ) - 1;
+    CollisionIndex index = this.getCollisionIndex();
+    if (index != null) {
+      return index.hasSolid(fromX, fromY, fromZ, toX, toY, toZ);
+    }
+
+    for (int posY = fromY; posY <= toY; ++posY) {
+      for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+        for (int posX = fromX; posX <= toX; ++posX) {
+          if (this.getBlock(posX, posY, posZ).isSolid()) {
+            return true;
+          }
+        }
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  public void enableCollisionIndex() {
+    this.collisionIndexEnabled = true;
+  }
+
+  // Returns null while the index is being built, the callers read the blocks directly meanwhile.
+  @Nullable
+  public CollisionIndex getCollisionIndex() {
+    if (!this.collisionIndexEnabled) {
+      return null;
+    }
+
+    CollisionIndex index = this.collisionIndex;
+    if (index == null && this.collisionIndexBuilding.compareAndSet(false, true)) {
+      this.backgroundExecutor.execute(() -> {
+        try {
+          this.buildCollisionIndex();
+        } finally {
+          this.collisionIndexBuilding.set(false);
+        }
+      });
+    }
+
+    return index;
+  }
+
+  // Called under the chunk lock after a write. The counter is moved before the index is read, so either the write updates the published index,
+  // or the build that is running meanwhile sees the counter change and drops its index. The index is dropped if it can't be updated.
+  private void updateCollisionIndex(Predicate<CollisionIndex> update) {
+    this.modifications.incrementAndGet();
+    CollisionIndex index = this.collisionIndex;
+    if (index != null && !update.test(index)) {
+      this.collisionIndex = null;
+    }
+  }
+
+  private synchronized void buildCollisionIndex() {
+    long modifications = this.modifications.get();
+    CollisionIndex index = CollisionIndex.build(this.getChunks());
+    // The writes made during the build may be missing from the index, so it is dropped and built again on the next read.
+    if (this.modifications.get() == modifications) {
+      this.collisionIndex = index;
+      // A write that moved the counter right before the index was published hasn't updated it.
+      if (this.modifications.get() != modifications) {
+        this.collisionIndex = null;
+      }
+    }
+  }
+
   @Override
   public void setBiome2d(int posX, int posZ, @NonNull VirtualBiome biome) {
-    this.getChunkOrNew(posX, posZ).setBiome2D(getChunkCoordinate(posX), getChunkCoordinate(posZ), biome);
+    SimpleChunk chunk = this.getChunkOrNew(posX, posZ);
+    this.withLock(chunk, () -> chunk.setBiome2D(getChunkCoordinate(posX), getChunkCoordinate(posZ), biome));
   }
 
   @Override
   public void setBiome3d(int posX, int posY, int posZ, @NonNull VirtualBiome biome) {
-    this.getChunkOrNew(posX, posZ).setBiome3D(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), biome);
+    SimpleChunk chunk = this.getChunkOrNew(posX, posZ);
+    this.withLock(chunk, () -> chunk.setBiome3D(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), biome));
   }
 
   @Override
@@ -104,79 +390,183 @@ public class SimpleWorld implements VirtualWorld {
 
   @Override
   public void setBlockLight(int posX, int posY, int posZ, byte light) {
-    this.getChunkOrNew(posX, posZ).setBlockLight(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), light);
+    SimpleChunk chunk = this.getChunkOrNew(posX, posZ);
+    this.withLock(chunk, () -> chunk.setBlockLight(getChunkCoordinate(posX), posY, getChunkCoordinate(posZ), light));
   }
 
   @Override
   public void fillBlockLight(int level) {
-    for (SimpleChunk chunk : this.chunks.values()) {
-      chunk.fillBlockLight(level);
+    this.checkNotFrozen();
+    for (ChunkStripe stripe : this.stripes) {
+      synchronized (stripe) {
+        for (SimpleChunk chunk : stripe.chunks.values()) {
+          chunk.fillBlockLight(level);
+        }
+      }
     }
   }
 
   @Override
   public void fillSkyLight(int level) {
-    for (SimpleChunk chunk : this.chunks.values()) {
-      chunk.fillSkyLight(level);
+    this.checkNotFrozen();
+    for (ChunkStripe stripe : this.stripes) {
+      synchronized (stripe) {
+        for (SimpleChunk chunk : stripe.chunks.values()) {
+          chunk.fillSkyLight(level);
+        }
+      }
     }
   }
 
   @Override
   public List<VirtualChunk> getChunks() {
-    return ImmutableList.copyOf(this.chunks.values());
+    ImmutableList.Builder<VirtualChunk> chunks = ImmutableList.builder();
+    for (ChunkStripe stripe : this.stripes) {
+      synchronized (stripe) {
+        chunks.addAll(stripe.chunks.values());
+      }
+    }
+
+    return chunks.build();
   }
 
   @Override
   public List<List<VirtualChunk>> getOrderedChunks() {
-    return this.distanceChunkMap.stream()
-        .map(Collections::unmodifiableList)
-        .toList();
+    return this.getChunkOrder().getRings();
   }
 
-  private int getDistanceToSpawn(VirtualChunk chunk) {
-    int diffX = getChunkXZ((int) this.spawnX) - chunk.getPosX();
-    int diffZ = getChunkXZ((int) this.spawnZ) - chunk.getPosZ();
-    return (int) Math.sqrt((diffX * diffX) + (diffZ * diffZ));
+  @Override
+  public List<List<VirtualChunk>> getOrderedChunks(int posX, int posZ) {
+    return new ChunkOrder(this.getChunks(), getChunkXZ(posX), getChunkXZ(posZ)).getRings();
+  }
+
+  public ChunkOrder getChunkOrder() {
+    ChunkOrder order = this.spawnOrder;
+    if (order == null) {
+      long addedChunks = this.addedChunks.get();
+      order = new ChunkOrder(this.getChunks(), getChunkXZ((int) this.spawnX), getChunkXZ((int) this.spawnZ));
+      // Chunks may be added by the other threads while the order is built, such order is not kept.
+      if (this.addedChunks.get() == addedChunks) {
+        this.spawnOrder = order;
+        if (this.addedChunks.get() != addedChunks) {
+          this.spawnOrder = null;
+        }
+      }
+    }
+
+    return order;
+  }
+
+  @Override
+  public synchronized void freeze() {
+    if (!this.frozen) {
+      this.frozen = true;
+      this.getChunkOrder();
+      if (this.collisionIndexEnabled) {
+        // Nothing is written after the freeze, so the index is built right away and is never dropped.
+        this.buildCollisionIndex();
+      }
+    }
+  }
+
+  @Override
+  public boolean isFrozen() {
+    return this.frozen;
   }
 
   @Nullable
   @Override
   public SimpleChunk getChunk(int posX, int posZ) {
-    return this.chunks.get(getChunkIndex(getChunkXZ(posX), getChunkXZ(posZ)));
+    posX = getChunkXZ(posX);
+    posZ = getChunkXZ(posZ);
+
+    SimpleChunk chunk = this.lastChunk;
+    if (chunk != null && chunk.getPosX() == posX && chunk.getPosZ() == posZ) {
+      return chunk;
+    }
+
+    long index = getChunkIndex(posX, posZ);
+    ChunkStripe stripe = this.getStripe(index);
+    synchronized (stripe) {
+      return stripe.chunks.get(index);
+    }
   }
 
   @Override
   public SimpleChunk getChunkOrNew(int posX, int posZ) {
+    this.checkNotFrozen();
     posX = getChunkXZ(posX);
     posZ = getChunkXZ(posZ);
 
-    // Modern Sodium versions don't load chunks if their "neighbours" are unloaded.
-    // We are fixing this problem there by generating all the "neighbours".
-    for (int chunkX = posX - 1; chunkX <= posX + 1; ++chunkX) {
-      for (int chunkZ = posZ - 1; chunkZ <= posZ + 1; ++chunkZ) {
-        this.localCreateChunk(chunkX, chunkZ);
+    SimpleChunk chunk = this.lastChunk;
+    if (chunk != null && chunk.getPosX() == posX && chunk.getPosZ() == posZ) {
+      return chunk;
+    }
+
+    long index = getChunkIndex(posX, posZ);
+    ChunkStripe stripe = this.getStripe(index);
+    boolean generateNeighbours;
+    synchronized (stripe) {
+      generateNeighbours = stripe.chunksWithNeighbours.add(index);
+    }
+
+    if (generateNeighbours) {
+      // Modern Sodium versions don't load chunks if their "neighbours" are unloaded.
+      // We are fixing this problem there by generating all the "neighbours".
+      for (int chunkX = posX - 1; chunkX <= posX + 1; ++chunkX) {
+        for (int chunkZ = posZ - 1; chunkZ <= posZ + 1; ++chunkZ) {
+          this.localCreateChunk(chunkX, chunkZ);
+        }
       }
     }
 
-    return this.chunks.get(getChunkIndex(posX, posZ));
+    // Another thread may still be generating the neighbours, so the chunk is created there if it's missing.
+    chunk = this.localCreateChunk(posX, posZ);
+    if (!this.concurrent) {
+      this.lastChunk = chunk;
+    }
+
+    return chunk;
   }
 
-  private void localCreateChunk(int posX, int posZ) {
+  private SimpleChunk localCreateChunk(int posX, int posZ) {
     long index = getChunkIndex(posX, posZ);
-    if (!this.chunks.containsKey(index)) {
-      SimpleChunk chunk = new SimpleChunk(posX, posZ, this.defaultBiome);
+    ChunkStripe stripe = this.getStripe(index);
+    SimpleChunk chunk;
+    synchronized (stripe) {
+      chunk = stripe.chunks.get(index);
+      if (chunk != null) {
+        return chunk;
+      }
 
-      this.chunks.put(index, chunk);
+      chunk = new SimpleChunk(posX, posZ, this.defaultBiome, this.storageFactory);
+      stripe.chunks.put(index, chunk);
+    }
 
-      int distance = this.getDistanceToSpawn(chunk);
-      for (int i = this.distanceChunkMap.size(); i <= distance; i++) {
-        this.distanceChunkMap.add(new LinkedList<>());
-      }
+    this.addedChunks.incrementAndGet();
+    this.spawnOrder = null;
+    return chunk;
+  }
+
+  private ChunkStripe getStripe(long index) {
+    return this.stripes[(int) HashCommon.mix(index) & (this.stripes.length - 1)];
+  }
 
-      this.distanceChunkMap.get(distance).add(chunk);
+  // Runs the action under the lock of the chunk stripe, the lock is only taken by the concurrent worlds.
+  private void withLock(SimpleChunk chunk, Runnable action) {
+    if (this.concurrent) {
+      synchronized (this.getStripe(getChunkIndex(chunk.getPosX(), chunk.getPosZ()))) {
+        action.run();
+      }
+    } else {
+      action.run();
     }
   }
 
+  private void checkNotFrozen() {
+    Preconditions.checkState(!this.frozen, "The world is frozen");
+  }
+
   @NonNull
   @Override
   public Dimension getDimension() {
@@ -214,6 +604,12 @@ public class SimpleWorld implements VirtualWorld {
       return ifNull.get();
     }
 
+    if (this.concurrent) {
+      synchronized (this.getStripe(getChunkIndex(chunk.getPosX(), chunk.getPosZ()))) {
+        return function.apply(chunk);
+      }
+    }
+
     return function.apply(chunk);
   }
 
@@ -228,4 +624,16 @@ public class SimpleWorld implements VirtualWorld {
   private static int getChunkCoordinate(int pos) {
     return pos & 15;
   }
+
+  private static final class ChunkStripe {
+
+    private final Long2ObjectOpenHashMap<SimpleChunk> chunks = new Long2ObjectOpenHashMap<>();
+    // Chunks whose neighbours are already generated.
+    private final LongOpenHashSet chunksWithNeighbours = new LongOpenHashSet();
+  }
+
+  private interface ChunkColumnConsumer {
+
+    void accept(int minX, int minZ, int maxX, int maxZ, int offset);
+  }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.server.world.chunk;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Fixed-size section slots in a memory-mapped temporary file, the file is deleted once the store is collected.
+public class MappedSectionStore {
+
+  public static final int SLOT_SIZE = SimpleChunk.MAX_BLOCKS_PER_SECTION;
+
+  private static final Cleaner CLEANER = Cleaner.create();
+  private static final int SLOTS_PER_REGION = 1024;
+
+  private final FileChannel channel;
+  private final List<ByteBuffer> regions = new ArrayList<>();
+  private final IntArrayList freeSlots = new IntArrayList();
+  private int nextSlot;
+
+  public MappedSectionStore() {
+    try {
+      Path file = Files.createTempFile("limboapi-", ".sections");
+      this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    FileChannel channel = this.channel;
+    CLEANER.register(this, () -> {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // Nothing to do there, the file is deleted by the OS anyway.
+      }
+    });
+  }
+
+  // The slot is returned to the store once the owner is collected or the slot is released.
+  public Slot allocate(Object owner) {
+    int index;
+    ByteBuffer region;
+    synchronized (this) {
+      if (this.freeSlots.isEmpty()) {
+        index = this.nextSlot++;
+        if (index / SLOTS_PER_REGION == this.regions.size()) {
+          this.regions.add(this.mapRegion(this.regions.size()));
+        }
+      } else {
+        index = this.freeSlots.popInt();
+      }
+
+      region = this.regions.get(index / SLOTS_PER_REGION);
+    }
+
+    int offset = index % SLOTS_PER_REGION * SLOT_SIZE;
+    return new Slot(region, offset, CLEANER.register(owner, () -> this.free(region, offset, index)));
+  }
+
+  private ByteBuffer mapRegion(int region) {
+    try {
+      long regionSize = (long) SLOTS_PER_REGION * SLOT_SIZE;
+      return this.channel.map(FileChannel.MapMode.READ_WRITE, region * regionSize, regionSize).order(ByteOrder.LITTLE_ENDIAN);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void free(ByteBuffer region, int offset, int index) {
+    // Fresh regions are zeroed by the file system, so the reused slots are zeroed there.
+    for (int i = 0; i < SLOT_SIZE; i += Long.BYTES) {
+      region.putLong(offset + i, 0L);
+    }
+
+    synchronized (this) {
+      this.freeSlots.add(index);
+    }
+  }
+
+  public static final class Slot {
+
+    private final ByteBuffer region;
+    private final int offset;
+    private final Cleaner.Cleanable cleanable;
+
+    private Slot(ByteBuffer region, int offset, Cleaner.Cleanable cleanable) {
+      this.region = region;
+      this.offset = offset;
+      this.cleanable = cleanable;
+    }
+
+    public int get(int index) {
+      return this.region.get(this.offset + index) & 0xFF;
+    }
+
+    public void set(int index, int value) {
+      this.region.put(this.offset + index, (byte) value);
+    }
+
+    // The slot is stored as little-endian longs, so every long is the same as a long of the 8-bit 1.16+ palette storage.
+    public long getLong(int index) {
+      return this.region.getLong(this.offset + index * Long.BYTES);
+    }
+
+    public void copyLongs(long[] destination) {
+      this.region.slice(this.offset, SLOT_SIZE).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(0, destination);
+    }
+
+    public void setLong(int index, long value) {
+      this.region.putLong(this.offset + index * Long.BYTES, value);
+    }
+
+    public void release() {
+      this.cleanable.clean();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.server.world.chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.elytrium.limboapi.api.chunk.VirtualBiome;
+import net.elytrium.limboapi.mcprotocollib.BitStorage116;
+
+public class SimpleBiomeStorage {
+
+  private static final int BIOMES_PER_CHUNK = 1024;
+
+  private final List<VirtualBiome> palette;
+  // Null while the whole chunk is the first palette biome.
+  private BitStorage116 storage;
+
+  public SimpleBiomeStorage(VirtualBiome biome) {
+    this.palette = new ArrayList<>(1);
+    this.palette.add(biome);
+  }
+
+  private SimpleBiomeStorage(List<VirtualBiome> palette, BitStorage116 storage) {
+    this.palette = palette;
+    this.storage = storage;
+  }
+
+  public VirtualBiome get(int index) {
+    return this.storage == null ? this.palette.get(0) : this.palette.get(this.storage.get(index));
+  }
+
+  public void set(int index, VirtualBiome biome) {
+    int id = this.palette.indexOf(biome);
+    if (this.storage == null) {
+      if (id == 0) {
+        return;
+      }
+
+      this.storage = new BitStorage116(1, BIOMES_PER_CHUNK);
+    }
+
+    if (id == -1) {
+      id = this.palette.size();
+      this.palette.add(biome);
+      if (id >= 1 << this.storage.getBitsPerEntry()) {
+        this.resize(this.storage.getBitsPerEntry() + 1);
+      }
+    }
+
+    this.storage.set(index, id);
+  }
+
+  private void resize(int bitsPerEntry) {
+    BitStorage116 newStorage = new BitStorage116(bitsPerEntry, BIOMES_PER_CHUNK);
+    for (int i = 0; i < BIOMES_PER_CHUNK; ++i) {
+      newStorage.set(i, this.storage.get(i));
+    }
+
+    this.storage = newStorage;
+  }
+
+  public VirtualBiome[] toArray() {
+    VirtualBiome[] biomes = new VirtualBiome[BIOMES_PER_CHUNK];
+    for (int i = 0; i < biomes.length; ++i) {
+      biomes[i] = this.get(i);
+    }
+
+    return biomes;
+  }
+
+  public SimpleBiomeStorage copy() {
+    return new SimpleBiomeStorage(new ArrayList<>(this.palette), this.storage == null ? null : (BitStorage116) this.storage.copy());
+  }
+
+  @Override
+  public String toString() {
+    return "SimpleBiomeStorage{"
+        + "palette=" + this.palette
+        + ", storage=" + this.storage
+        + "}";
+  }
+}
@@ -17,15 +17,18 @@
 
 package net.elytrium.limboapi.server.world.chunk;
 
-import java.util.ArrayList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 import net.elytrium.limboapi.api.chunk.VirtualBiome;
 import net.elytrium.limboapi.api.chunk.VirtualBlock;
 import net.elytrium.limboapi.api.chunk.VirtualBlockEntity;
 import net.elytrium.limboapi.api.chunk.VirtualChunk;
+import net.elytrium.limboapi.api.chunk.data.BlockStorage;
 import net.elytrium.limboapi.api.chunk.data.ChunkSnapshot;
 import net.elytrium.limboapi.api.chunk.data.LightSection;
+import net.elytrium.limboapi.api.mcprotocollib.NibbleArray3D;
 import net.elytrium.limboapi.material.Biome;
 import net.elytrium.limboapi.server.world.SimpleBlock;
 import net.kyori.adventure.nbt.CompoundBinaryTag;
@@ -40,25 +43,43 @@ public class SimpleChunk implements VirtualChunk {
 
   private final int posX;
   private final int posZ;
+  // Creates the block storages of the new sections, null for the default heap storage.
+  @Nullable
+  private final Supplier<BlockStorage> storageFactory;
 
   private final SimpleSection[] sections = new SimpleSection[16];
-  private final LightSection[] light = new LightSection[18];
-  private final VirtualBiome[] biomes = new VirtualBiome[1024];
-  private final List<VirtualBlockEntity.Entry> blockEntityEntries = new ArrayList<>();
+  private final SimpleLightSection[] light = new SimpleLightSection[18];
+  // Keyed by the packed position, so there is only one block entity per block.
+  private final Int2ObjectLinkedOpenHashMap<VirtualBlockEntity.Entry> blockEntityEntries = new Int2ObjectLinkedOpenHashMap<>();
+  // Immutable list of the block entities shared between snapshots, reset on every change.
+  private List<VirtualBlockEntity.Entry> blockEntityList;
+  private SimpleBiomeStorage biomes;
+
+  // Bitmasks of the sections and light sections referenced by snapshots, such sections are copied before the next change.
+  private int sharedSections;
+  private int sharedLight;
+  private boolean sharedBiomes;
 
   public SimpleChunk(int posX, int posZ) {
     this(posX, posZ, Biome.PLAINS);
   }
 
   public SimpleChunk(int posX, int posZ, VirtualBiome defaultBiome) {
+    this(posX, posZ, defaultBiome, null);
+  }
+
+  public SimpleChunk(int posX, int posZ, VirtualBiome defaultBiome, @Nullable Supplier<BlockStorage> storageFactory) {
     this.posX = posX;
     this.posZ = posZ;
+    this.storageFactory = storageFactory;
 
+    // The default light is copied on the first change, same as the light shared with a snapshot.
+    this.sharedLight = (1 << this.light.length) - 1;
     for (int i = 0; i < this.light.length; ++i) {
-      this.light[i] = new SimpleLightSection();
+      this.light[i] = SimpleLightSection.DEFAULT;
     }
 
-    Arrays.fill(this.biomes, defaultBiome);
+    this.biomes = new SimpleBiomeStorage(defaultBiome);
   }
 
   @Override
@@ -69,24 +90,33 @@ public class SimpleChunk implements VirtualChunk {
   @Override
   public void setBlockEntity(int posX, int posY, int posZ, @Nullable CompoundBinaryTag nbt, @Nullable VirtualBlockEntity blockEntity) {
     if (blockEntity == null) {
-      this.blockEntityEntries.removeIf(entry -> entry.getPosX() == posX && entry.getPosY() == posY && entry.getPosZ() == posZ);
+      if (this.blockEntityEntries.remove(getBlockEntityKey(posX, posY, posZ)) != null) {
+        this.blockEntityList = null;
+      }
+
       return;
     }
 
-    this.blockEntityEntries.add(blockEntity.getEntry(posX, posY, posZ, nbt));
+    this.blockEntityEntries.put(getBlockEntityKey(posX, posY, posZ), blockEntity.getEntry(posX, posY, posZ, nbt));
+    this.blockEntityList = null;
   }
 
   @Override
   public void setBlockEntity(VirtualBlockEntity.Entry blockEntityEntry) {
-    this.blockEntityEntries.add(blockEntityEntry);
+    this.blockEntityEntries.put(getBlockEntityKey(blockEntityEntry.getPosX(), blockEntityEntry.getPosY(), blockEntityEntry.getPosZ()), blockEntityEntry);
+    this.blockEntityList = null;
   }
 
   private SimpleSection getSection(int posY) {
     int sectionIndex = getSectionIndex(posY);
     SimpleSection section = this.sections[sectionIndex];
     if (section == null) {
-      section = new SimpleSection();
+      section = this.storageFactory == null ? new SimpleSection() : new SimpleSection(this.storageFactory.get());
       this.sections[sectionIndex] = section;
+    } else if ((this.sharedSections & 1 << sectionIndex) != 0) {
+      section = section.getSnapshot();
+      this.sections[sectionIndex] = section;
+      this.sharedSections &= ~(1 << sectionIndex);
     }
 
     return section;
@@ -103,6 +133,81 @@ public class SimpleChunk implements VirtualChunk {
     }
   }
 
+  @Override
+  public void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @Nullable VirtualBlock block) {
+    int minY = Math.min(fromY, toY);
+    int maxY = Math.max(fromY, toY);
+    boolean air = block == null || SimpleBlock.AIR.equals(block);
+    for (int sectionIndex = getSectionIndex(minY); sectionIndex <= getSectionIndex(maxY); ++sectionIndex) {
+      if (air && this.sections[sectionIndex] == null) {
+        continue;
+      }
+
+      this.getSection(sectionIndex << 4).fill(
+          Math.min(fromX, toX), Math.max(minY, sectionIndex << 4) & 15, Math.min(fromZ, toZ),
+          Math.max(fromX, toX), Math.min(maxY, sectionIndex << 4 | 15) & 15, Math.max(fromZ, toZ), block
+      );
+    }
+  }
+
+  @Override
+  public void replace(@NonNull VirtualBlock from, @Nullable VirtualBlock to) {
+    // Missing sections are air, so they are only created when air is replaced with something else.
+    boolean fill = SimpleBlock.AIR.equals(from) && to != null && !SimpleBlock.AIR.equals(to);
+    for (int i = 0; i < this.sections.length; ++i) {
+      if (this.sections[i] != null) {
+        // Checked on the current section, so the shared sections without the block are not copied.
+        if (this.sections[i].contains(from)) {
+          this.getSection(i << 4).replace(from, to);
+        }
+      } else if (fill) {
+        this.getSection(i << 4).fill(0, 0, 0, 15, 15, 15, to);
+      }
+    }
+  }
+
+  // Reads the blocks of the box into the array, see SimpleSection#getBlocks for the layout.
+  public void getBlocks(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, VirtualBlock[] blocks, int offset, int strideZ, int strideY) {
+    for (int sectionIndex = getSectionIndex(fromY); sectionIndex <= getSectionIndex(toY); ++sectionIndex) {
+      int sectionFromY = Math.max(fromY, sectionIndex << 4);
+      int sectionToY = Math.min(toY, sectionIndex << 4 | 15);
+      int sectionOffset = offset + (sectionFromY - fromY) * strideY;
+      SimpleSection section = this.sections[sectionIndex];
+      if (section == null) {
+        for (int posY = sectionFromY; posY <= sectionToY; ++posY) {
+          for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+            int index = sectionOffset + (posY - sectionFromY) * strideY + (posZ - fromZ) * strideZ;
+            Arrays.fill(blocks, index, index + toX - fromX + 1, SimpleBlock.AIR);
+          }
+        }
+      } else {
+        section.getBlocks(fromX, sectionFromY & 15, fromZ, toX, sectionToY & 15, toZ, blocks, sectionOffset, strideZ, strideY);
+      }
+    }
+  }
+
+  public void setBlocks(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, VirtualBlock[] blocks, int offset, int strideZ, int strideY) {
+    for (int sectionIndex = getSectionIndex(fromY); sectionIndex <= getSectionIndex(toY); ++sectionIndex) {
+      int sectionFromY = Math.max(fromY, sectionIndex << 4);
+      this.getSection(sectionFromY).setBlocks(
+          fromX, sectionFromY & 15, fromZ, toX, Math.min(toY, sectionIndex << 4 | 15) & 15, toZ,
+          blocks, offset + (sectionFromY - fromY) * strideY, strideZ, strideY
+      );
+    }
+  }
+
+  // Replaces the whole section instead of copying it if it is shared with a snapshot.
+  public void setSection(int posY, SimpleSection section) {
+    int sectionIndex = getSectionIndex(posY);
+    this.sections[sectionIndex] = section;
+    this.sharedSections &= ~(1 << sectionIndex);
+  }
+
+  public void setBiomes(SimpleBiomeStorage biomes) {
+    this.biomes = biomes;
+    this.sharedBiomes = false;
+  }
+
   @Override
   public void setBiome2D(int posX, int posZ, @NonNull VirtualBiome biome) {
     for (int posY = 0; posY < 256; posY += 4) {
@@ -112,18 +217,23 @@ public class SimpleChunk implements VirtualChunk {
 
   @Override
   public void setBiome3D(int posX, int posY, int posZ, @NonNull VirtualBiome biome) {
-    this.biomes[getBiomeIndex(posX, posY, posZ)] = biome;
+    if (this.sharedBiomes) {
+      this.biomes = this.biomes.copy();
+      this.sharedBiomes = false;
+    }
+
+    this.biomes.set(getBiomeIndex(posX, posY, posZ), biome);
   }
 
   @NonNull
   @Override
   public VirtualBiome getBiome(int posX, int posY, int posZ) {
-    return this.biomes[getBiomeIndex(posX, posY, posZ)];
+    return this.biomes.get(getBiomeIndex(posX, posY, posZ));
   }
 
   @Override
   public void setBlockLight(int posX, int posY, int posZ, byte light) {
-    this.getLightSection(posY).setBlockLight(posX, posY & 15, posZ, light);
+    this.getWritableLightSection(posY).setBlockLight(posX, posY & 15, posZ, light);
   }
 
   @Override
@@ -133,7 +243,7 @@ public class SimpleChunk implements VirtualChunk {
 
   @Override
   public void setSkyLight(int posX, int posY, int posZ, byte light) {
-    this.getLightSection(posY).setSkyLight(posX, posY & 15, posZ, light);
+    this.getWritableLightSection(posY).setSkyLight(posX, posY & 15, posZ, light);
   }
 
   @Override
@@ -142,20 +252,49 @@ public class SimpleChunk implements VirtualChunk {
   }
 
   private LightSection getLightSection(int posY) {
-    return this.light[posY < 0 ? 0 : getSectionIndex(posY) + 1];
+    return this.light[getLightSectionIndex(posY)];
+  }
+
+  private SimpleLightSection getWritableLightSection(int posY) {
+    return this.getWritableLight(getLightSectionIndex(posY));
+  }
+
+  private SimpleLightSection getWritableLight(int index) {
+    SimpleLightSection lightSection = this.light[index];
+    if ((this.sharedLight & 1 << index) != 0) {
+      lightSection = lightSection.copy();
+      this.light[index] = lightSection;
+      this.sharedLight &= ~(1 << index);
+    }
+
+    return lightSection;
   }
 
   @Override
   public void fillBlockLight(@IntRange(from = 0, to = 15) int level) {
-    for (LightSection lightSection : this.light) {
-      lightSection.getBlockLight().fill(level);
+    for (int i = 0; i < this.light.length; ++i) {
+      this.fillBlockLight(i, level);
+    }
+  }
+
+  // Light section indexes start from the section below the world.
+  public void setBlockLight(int index, NibbleArray3D light) {
+    this.getWritableLight(index).setBlockLight(light);
+  }
+
+  public void fillBlockLight(int index, @IntRange(from = 0, to = 15) int level) {
+    // Sections that already have this level are neither copied nor marked as changed.
+    if (SimpleLightSection.getUniformLevel(this.light[index].getBlockLight()) != level) {
+      this.getWritableLight(index).fillBlockLight(level);
     }
   }
 
   @Override
   public void fillSkyLight(@IntRange(from = 0, to = 15) int level) {
-    for (LightSection lightSection : this.light) {
-      lightSection.getSkyLight().fill(level);
+    for (int i = 0; i < this.light.length; ++i) {
+      if (SimpleLightSection.getUniformLevel(this.light[i].getSkyLight()) != level) {
+        this.getWritableLight(i).fillSkyLight(level);
+      }
     }
   }
 
@@ -171,37 +310,63 @@ public class SimpleChunk implements VirtualChunk {
 
   @Override
   public ChunkSnapshot getFullChunkSnapshot() {
-    return this.createSnapshot(true, 0);
+    return this.createSnapshot(true, 0, true);
   }
 
   @Override
   public ChunkSnapshot getPartialChunkSnapshot(long previousUpdate) {
-    return this.createSnapshot(false, previousUpdate);
+    return this.createSnapshot(false, previousUpdate, true);
+  }
+
+  // The sections are not marked as shared, so the next changes are made in place and the view must not be used after them.
+  public ChunkSnapshot getReadOnlyView() {
+    return this.createSnapshot(true, 0, false);
   }
 
-  private ChunkSnapshot createSnapshot(boolean full, long previousUpdate) {
+  // Snapshots reference the current sections instead of copying them, the chunk copies a shared section on its next change.
+  private ChunkSnapshot createSnapshot(boolean full, long previousUpdate, boolean share) {
     SimpleSection[] sectionsSnapshot = new SimpleSection[this.sections.length];
     for (int i = 0; i < this.sections.length; ++i) {
       if (this.sections[i] != null && this.sections[i].getLastUpdate() > previousUpdate) {
-        sectionsSnapshot[i] = this.sections[i].getSnapshot();
+        sectionsSnapshot[i] = this.sections[i];
+        if (share) {
+          this.sharedSections |= 1 << i;
+        }
       }
     }
 
     LightSection[] lightSnapshot = new LightSection[this.light.length];
     for (int i = 0; i < lightSnapshot.length; ++i) {
       if (this.light[i].getLastUpdate() > previousUpdate) {
-        lightSnapshot[i] = this.light[i].copy();
+        lightSnapshot[i] = this.light[i];
+        if (share) {
+          this.sharedLight |= 1 << i;
+        }
       }
     }
 
-    return new SimpleChunkSnapshot(this.posX, this.posZ, full, sectionsSnapshot, lightSnapshot,
-        Arrays.copyOf(this.biomes, this.biomes.length), List.copyOf(this.blockEntityEntries));
+    List<VirtualBlockEntity.Entry> blockEntities = this.blockEntityList;
+    if (blockEntities == null) {
+      blockEntities = List.copyOf(this.blockEntityEntries.values());
+      this.blockEntityList = blockEntities;
+    }
+
+    this.sharedBiomes |= share;
+    return new SimpleChunkSnapshot(this.posX, this.posZ, full, sectionsSnapshot, lightSnapshot, this.biomes, blockEntities);
   }
 
   private static int getBiomeIndex(int posX, int posY, int posZ) {
     return (posY >> 2 & 63) << 4 | (posZ >> 2 & 3) << 2 | posX >> 2 & 3;
   }
 
+  private static int getBlockEntityKey(int posX, int posY, int posZ) {
+    return posY << 8 | (posZ & 15) << 4 | posX & 15;
+  }
+
+  private static int getLightSectionIndex(int posY) {
+    return posY < 0 ? 0 : getSectionIndex(posY) + 1;
+  }
+
   private static int getSectionIndex(int posY) {
     return posY >> 4;
   }
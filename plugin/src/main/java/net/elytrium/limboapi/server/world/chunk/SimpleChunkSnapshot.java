@@ -32,11 +32,11 @@ public class SimpleChunkSnapshot implements ChunkSnapshot {
   private final boolean fullChunk;
   private final SimpleSection[] sections;
   private final LightSection[] light;
-  private final VirtualBiome[] biomes;
+  private final SimpleBiomeStorage biomes;
   private final List<VirtualBlockEntity.Entry> blockEntityEntries;
 
   public SimpleChunkSnapshot(int posX, int posZ, boolean fullChunk, SimpleSection[] sections, LightSection[] light,
-                             VirtualBiome[] biomes, List<VirtualBlockEntity.Entry> blockEntityEntries) {
+                             SimpleBiomeStorage biomes, List<VirtualBlockEntity.Entry> blockEntityEntries) {
     this.posX = posX;
     this.posZ = posZ;
     this.fullChunk = fullChunk;
@@ -79,6 +79,16 @@ public class SimpleChunkSnapshot implements ChunkSnapshot {
 
   @Override
   public VirtualBiome[] getBiomes() {
+    return this.biomes.toArray();
+  }
+
+  @Override
+  public VirtualBiome getBiome(int posX, int posY, int posZ) {
+    return this.biomes.get((posY >> 2 & 63) << 4 | (posZ >> 2 & 3) << 2 | posX >> 2 & 3);
+  }
+
+  // Shared with the chunk until it changes a biome, so the snapshots with the same biomes return the same storage.
+  public SimpleBiomeStorage getBiomeStorage() {
     return this.biomes;
   }
 
@@ -18,20 +18,30 @@
 package net.elytrium.limboapi.server.world.chunk;
 
 import com.google.common.base.Preconditions;
+import java.util.Arrays;
 import net.elytrium.limboapi.api.chunk.data.LightSection;
 import net.elytrium.limboapi.api.mcprotocollib.NibbleArray3D;
 
 public class SimpleLightSection implements LightSection {
 
-  private static final NibbleArray3D NO_LIGHT = new NibbleArray3D(SimpleChunk.MAX_BLOCKS_PER_SECTION);
-  private static final NibbleArray3D ALL_LIGHT = new NibbleArray3D(SimpleChunk.MAX_BLOCKS_PER_SECTION, 15);
+  // Shared arrays of the sections lit with the same level everywhere, a section copies the array on the first different write.
+  private static final UniformLight[] UNIFORM_LIGHT = new UniformLight[16];
+
+  static {
+    for (int level = 0; level < UNIFORM_LIGHT.length; ++level) {
+      UNIFORM_LIGHT[level] = new UniformLight(level);
+    }
+  }
+
+  // Unlit section under the open sky, shared by the new chunks until their first light change.
+  static final SimpleLightSection DEFAULT = new SimpleLightSection();
 
   private NibbleArray3D blockLight;
   private NibbleArray3D skyLight;
   private long lastUpdate;
 
   public SimpleLightSection() {
-    this(NO_LIGHT, ALL_LIGHT, System.nanoTime());
+    this(UNIFORM_LIGHT[0], UNIFORM_LIGHT[15], System.nanoTime());
   }
 
   private SimpleLightSection(NibbleArray3D blockLight, NibbleArray3D skyLight, long lastUpdate) {
@@ -45,8 +55,12 @@ public class SimpleLightSection implements LightSection {
     this.checkIndexes(posX, posY, posZ);
     Preconditions.checkArgument(light >= 0 && light <= 15, "light should be between 0 and 15");
 
-    if (this.blockLight == NO_LIGHT && light != 0) {
-      this.blockLight = new NibbleArray3D(SimpleChunk.MAX_BLOCKS_PER_SECTION);
+    if (this.blockLight instanceof UniformLight uniform) {
+      if (uniform.level == light) {
+        return;
+      }
+
+      this.blockLight = uniform.copy();
     }
 
     this.blockLight.set(posX, posY, posZ, light);
@@ -69,8 +83,12 @@ public class SimpleLightSection implements LightSection {
     this.checkIndexes(posX, posY, posZ);
     Preconditions.checkArgument(light >= 0 && light <= 15, "light should be between 0 and 15");
 
-    if (this.skyLight == ALL_LIGHT && light != 15) {
-      this.skyLight = new NibbleArray3D(SimpleChunk.MAX_BLOCKS_PER_SECTION);
+    if (this.skyLight instanceof UniformLight uniform) {
+      if (uniform.level == light) {
+        return;
+      }
+
+      this.skyLight = uniform.copy();
     }
 
     this.skyLight.set(posX, posY, posZ, light);
@@ -88,6 +106,25 @@ public class SimpleLightSection implements LightSection {
     return (byte) this.skyLight.get(posX, posY, posZ);
   }
 
+  public void fillBlockLight(int level) {
+    Preconditions.checkArgument(level >= 0 && level <= 15, "light should be between 0 and 15");
+    this.blockLight = UNIFORM_LIGHT[level];
+    this.lastUpdate = System.nanoTime();
+  }
+
+  // The array is used as is, without a copy.
+  public void setBlockLight(NibbleArray3D blockLight) {
+    Preconditions.checkArgument(getReadOnlyData(blockLight).length == SimpleChunk.MAX_BLOCKS_PER_SECTION >> 1, "light should have 4096 entries");
+    this.blockLight = blockLight;
+    this.lastUpdate = System.nanoTime();
+  }
+
+  public void fillSkyLight(int level) {
+    Preconditions.checkArgument(level >= 0 && level <= 15, "light should be between 0 and 15");
+    this.skyLight = UNIFORM_LIGHT[level];
+    this.lastUpdate = System.nanoTime();
+  }
+
   private void checkIndexes(int posX, int posY, int posZ) {
     Preconditions.checkArgument(this.checkIndex(posX), "x should be between 0 and 15");
     Preconditions.checkArgument(this.checkIndex(posY), "y should be between 0 and 15");
@@ -105,8 +142,56 @@ public class SimpleLightSection implements LightSection {
 
   @Override
   public SimpleLightSection copy() {
-    NibbleArray3D skyLight = this.skyLight == ALL_LIGHT ? ALL_LIGHT : this.skyLight.copy();
-    NibbleArray3D blockLight = this.blockLight == NO_LIGHT ? NO_LIGHT : this.blockLight.copy();
+    NibbleArray3D skyLight = this.skyLight instanceof UniformLight ? this.skyLight : this.skyLight.copy();
+    NibbleArray3D blockLight = this.blockLight instanceof UniformLight ? this.blockLight : this.blockLight.copy();
     return new SimpleLightSection(blockLight, skyLight, this.lastUpdate);
   }
+
+  // Returns the light level of the whole array if it is one of the shared uniform arrays, -1 otherwise.
+  public static int getUniformLevel(NibbleArray3D light) {
+    return light instanceof UniformLight uniform ? uniform.level : -1;
+  }
+
+  // Same as getData, but without copying the shared uniform arrays, for the encoders that only read the array.
+  public static byte[] getReadOnlyData(NibbleArray3D light) {
+    return light instanceof UniformLight uniform ? uniform.data : light.getData();
+  }
+
+  private static final class UniformLight extends NibbleArray3D {
+
+    private final byte[] data;
+    private final int level;
+
+    private UniformLight(int level) {
+      this(createData(level), level);
+    }
+
+    private UniformLight(byte[] data, int level) {
+      super(data);
+      this.data = data;
+      this.level = level;
+    }
+
+    // The array is shared by every section with this level, so the callers get a copy of it.
+    @Override
+    public byte[] getData() {
+      return this.data.clone();
+    }
+
+    @Override
+    public void set(int key, int val) {
+      throw new UnsupportedOperationException("Shared light array can't be modified");
+    }
+
+    @Override
+    public void fill(int value) {
+      throw new UnsupportedOperationException("Shared light array can't be modified");
+    }
+
+    private static byte[] createData(int level) {
+      byte[] data = new byte[SimpleChunk.MAX_BLOCKS_PER_SECTION >> 1];
+      Arrays.fill(data, (byte) (level << 4 | level));
+      return data;
+    }
+  }
 }
@@ -58,6 +58,73 @@ public class SimpleSection implements BlockSection {
     return this.blocks.get(posX, posY, posZ);
   }
 
+  public void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, @Nullable VirtualBlock block) {
+    this.checkIndexes(fromX, fromY, fromZ);
+    this.checkIndexes(toX, toY, toZ);
+    this.blocks.fill(fromX, fromY, fromZ, toX, toY, toZ, block == null ? SimpleBlock.AIR : block);
+    this.lastUpdate = System.nanoTime();
+  }
+
+  public void replace(VirtualBlock from, @Nullable VirtualBlock to) {
+    if (this.blocks.replace(from, to == null ? SimpleBlock.AIR : to)) {
+      this.lastUpdate = System.nanoTime();
+    }
+  }
+
+  public boolean contains(VirtualBlock block) {
+    if (this.blocks instanceof BlockStorage19 storage) {
+      return storage.contains(block);
+    }
+
+    for (int i = 0; i < SimpleChunk.MAX_BLOCKS_PER_SECTION; ++i) {
+      if (this.blocks.get(i & 15, i >> 8, i >> 4 & 15).equals(block)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // The array is indexed as offset + posY * strideY + posZ * strideZ + posX, relative to the "from" corner.
+  public void getBlocks(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, VirtualBlock[] blocks, int offset, int strideZ, int strideY) {
+    this.checkIndexes(fromX, fromY, fromZ);
+    this.checkIndexes(toX, toY, toZ);
+    for (int posY = fromY; posY <= toY; ++posY) {
+      for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+        int index = offset + (posY - fromY) * strideY + (posZ - fromZ) * strideZ;
+        for (int posX = fromX; posX <= toX; ++posX) {
+          blocks[index++] = this.blocks.get(posX, posY, posZ);
+        }
+      }
+    }
+  }
+
+  public void setBlocks(int fromX, int fromY, int fromZ, int toX, int toY, int toZ, VirtualBlock[] blocks, int offset, int strideZ, int strideY) {
+    this.checkIndexes(fromX, fromY, fromZ);
+    this.checkIndexes(toX, toY, toZ);
+    for (int posY = fromY; posY <= toY; ++posY) {
+      for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+        int index = offset + (posY - fromY) * strideY + (posZ - fromZ) * strideZ;
+        for (int posX = fromX; posX <= toX; ++posX) {
+          VirtualBlock block = blocks[index++];
+          this.blocks.set(posX, posY, posZ, block == null ? SimpleBlock.AIR : block);
+        }
+      }
+    }
+
+    this.lastUpdate = System.nanoTime();
+  }
+
+  // Palette indices are in the BlockStorage#index order.
+  public void setPaletted(VirtualBlock[] palette, int[] indices) {
+    this.blocks.setPaletted(palette, indices);
+    this.lastUpdate = System.nanoTime();
+  }
+
+  public BlockStorage getStorage() {
+    return this.blocks;
+  }
+
   private void checkIndexes(int posX, int posY, int posZ) {
     Preconditions.checkArgument(this.checkIndex(posX), "x should be between 0 and 15");
     Preconditions.checkArgument(this.checkIndex(posY), "y should be between 0 and 15");
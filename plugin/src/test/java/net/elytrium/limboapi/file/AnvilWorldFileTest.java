@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.file;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+// The sections are packed here the way the game writes them: entries don't span longs, the low bits come first.
+public class AnvilWorldFileTest {
+
+  @ParameterizedTest
+  @CsvSource({
+      // Blocks, at least 4 bits per entry.
+      "1, 4, 4096",
+      "2, 4, 4096",
+      "16, 4, 4096",
+      "17, 4, 4096",
+      "33, 4, 4096",
+      "300, 4, 4096",
+      // Biomes, at least 1 bit per entry.
+      "1, 1, 64",
+      "2, 1, 64",
+      "3, 1, 64",
+      "5, 1, 64",
+      "40, 1, 64"
+  })
+  public void testUnpack(int paletteSize, int minBits, int size) {
+    Random random = new Random(paletteSize * 31L + size);
+    int[] expected = new int[size];
+    for (int i = 0; i < size; ++i) {
+      expected[i] = random.nextInt(paletteSize);
+    }
+
+    Assertions.assertArrayEquals(expected, AnvilWorldFile.unpack(pack(expected, paletteSize, minBits), paletteSize, minBits, size));
+  }
+
+  // Single entry palettes have no data at all.
+  private static long[] pack(int[] values, int paletteSize, int minBits) {
+    if (paletteSize == 1) {
+      return new long[0];
+    }
+
+    int bits = Math.max(minBits, Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize - 1));
+    int valuesPerLong = Long.SIZE / bits;
+    long[] data = new long[(values.length + valuesPerLong - 1) / valuesPerLong];
+    for (int i = 0; i < values.length; ++i) {
+      data[i / valuesPerLong] |= (long) values[i] << i % valuesPerLong * bits;
+    }
+
+    return data;
+  }
+}
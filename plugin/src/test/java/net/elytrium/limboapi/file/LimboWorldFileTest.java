@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.file;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import net.elytrium.limboapi.api.chunk.Dimension;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.WorldStorageType;
+import net.elytrium.limboapi.material.Biome;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+import net.elytrium.limboapi.server.world.SimpleWorld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+// Writes a world and reads it back, both into the sections directly (chunk aligned offsets) and block by block.
+public class LimboWorldFileTest {
+
+  private static final int SIZE = 40;
+  private static final int HEIGHT = 200;
+
+  @TempDir
+  private Path directory;
+
+  @BeforeAll
+  public static void init() {
+    SimpleBlock.init();
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+      "HEAP, 0, 0, 0",
+      "HEAP, 16, 16, -32",
+      "HEAP, 5, 3, -7",
+      "MAPPED, 0, 0, 0",
+      "MAPPED, 5, 3, -7"
+  })
+  public void testRoundTrip(WorldStorageType storageType, int offsetX, int offsetY, int offsetZ) throws IOException {
+    VirtualBlock[] blocks = new VirtualBlock[20];
+    blocks[0] = SimpleBlock.AIR;
+    for (int i = 1; i < blocks.length; ++i) {
+      blocks[i] = i % 2 == 0 ? SimpleBlock.solid((short) i) : SimpleBlock.nonSolid(false, (short) i);
+    }
+
+    Random random = new Random(offsetX * 31L + offsetZ);
+    SimpleWorld world = new SimpleWorld(Dimension.OVERWORLD, 0, 0, 0, 0, 0, false, storageType);
+    world.fill(-SIZE, 0, -SIZE, SIZE, 10, SIZE, blocks[2]);
+    for (int i = 0; i < 20000; ++i) {
+      world.setBlock(random.nextInt(SIZE * 2) - SIZE, random.nextInt(HEIGHT), random.nextInt(SIZE * 2) - SIZE, blocks[random.nextInt(blocks.length)]);
+    }
+
+    for (int i = 0; i < 200; ++i) {
+      world.setBlockLight(random.nextInt(SIZE * 2) - SIZE, random.nextInt(HEIGHT), random.nextInt(SIZE * 2) - SIZE, (byte) random.nextInt(16));
+      world.setBiome3d(random.nextInt(SIZE * 2) - SIZE, random.nextInt(HEIGHT), random.nextInt(SIZE * 2) - SIZE, Biome.SWAMP);
+    }
+
+    Path file = this.directory.resolve("world.limbo");
+    LimboWorldFile.write(world, file);
+    SimpleWorld target = new SimpleWorld(Dimension.OVERWORLD, 0, 0, 0, 0, 0, false, storageType);
+    // The factory is only used for the block entities.
+    LimboWorldFile.open(file).toWorld(null, target, offsetX, offsetY, offsetZ, 15);
+
+    boolean aligned = ((offsetX | offsetY | offsetZ) & 15) == 0;
+    for (int posX = -SIZE; posX <= SIZE; ++posX) {
+      for (int posZ = -SIZE; posZ <= SIZE; ++posZ) {
+        for (int posY = 0; posY < HEIGHT; ++posY) {
+          VirtualBlock expected = world.getBlock(posX, posY, posZ);
+          VirtualBlock actual = target.getBlock(posX + offsetX, posY + offsetY, posZ + offsetZ);
+          String position = posX + " " + posY + " " + posZ;
+          Assertions.assertEquals(expected.getModernID(), actual.getModernID(), "block at " + position);
+          Assertions.assertEquals(expected.isSolid(), actual.isSolid(), "solid flag at " + position);
+          Assertions.assertEquals(expected.isAir(), actual.isAir(), "air flag at " + position);
+          Assertions.assertEquals(expected.isMotionBlocking(), actual.isMotionBlocking(), "motion blocking flag at " + position);
+          Assertions.assertEquals(
+              world.getBlockLight(posX, posY, posZ), target.getBlockLight(posX + offsetX, posY + offsetY, posZ + offsetZ), "block light at " + position
+          );
+          // Biomes are stored per 4x4x4 cell, so they can be compared only if the cells stay aligned.
+          if (aligned) {
+            Assertions.assertSame(
+                world.getBiome(posX, posY, posZ), target.getBiome(posX + offsetX, posY + offsetY, posZ + offsetZ), "biome at " + position
+            );
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.protocol.data;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.data.BlockStorage;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Compares the paletted storage with a plain array of blocks after random writes,
+// with enough distinct blocks to go through the single, the indirect and the direct palettes.
+public class BlockStorage19Test {
+
+  private static final ProtocolVersion[] VERSIONS = {
+      ProtocolVersion.MINECRAFT_1_9, ProtocolVersion.MINECRAFT_1_13, ProtocolVersion.MINECRAFT_1_16, ProtocolVersion.MINECRAFT_1_17,
+      ProtocolVersion.MINECRAFT_1_18, ProtocolVersion.MINECRAFT_1_21_5
+  };
+
+  @BeforeAll
+  public static void init() {
+    SimpleBlock.init();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 16, 17, 300})
+  public void testRandomWrites(int blockCount) {
+    VirtualBlock[] blocks = createBlocks(blockCount);
+    for (ProtocolVersion version : VERSIONS) {
+      Random random = new Random(blockCount * 31L + version.getProtocol());
+      BlockStorage19 storage = new BlockStorage19(version);
+      VirtualBlock[] expected = new VirtualBlock[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+      Arrays.fill(expected, SimpleBlock.AIR);
+      for (int operation = 0; operation < 2000; ++operation) {
+        int type = random.nextInt(20);
+        VirtualBlock block = blocks[random.nextInt(blocks.length)];
+        if (type == 0) {
+          int fromX = random.nextInt(16);
+          int fromY = random.nextInt(16);
+          int fromZ = random.nextInt(16);
+          int toX = fromX + random.nextInt(16 - fromX);
+          int toY = fromY + random.nextInt(16 - fromY);
+          int toZ = fromZ + random.nextInt(16 - fromZ);
+          storage.fill(fromX, fromY, fromZ, toX, toY, toZ, block);
+          for (int posY = fromY; posY <= toY; ++posY) {
+            for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+              for (int posX = fromX; posX <= toX; ++posX) {
+                expected[BlockStorage.index(posX, posY, posZ)] = block;
+              }
+            }
+          }
+        } else if (type == 1) {
+          storage.fill(0, 0, 0, 15, 15, 15, block);
+          Arrays.fill(expected, block);
+        } else if (type == 2) {
+          VirtualBlock from = random.nextBoolean() ? expected[random.nextInt(expected.length)] : blocks[random.nextInt(blocks.length)];
+          boolean changed = storage.replace(from, block);
+          boolean expectedChanged = false;
+          for (int i = 0; i < expected.length; ++i) {
+            if (expected[i] == from && from != block) {
+              expected[i] = block;
+              expectedChanged = true;
+            }
+          }
+
+          if (expectedChanged) {
+            Assertions.assertTrue(changed, "replace of a contained block has to report a change");
+          }
+        } else {
+          int index = random.nextInt(SimpleChunk.MAX_BLOCKS_PER_SECTION);
+          storage.set(index & 15, index >> 8, index >> 4 & 15, block);
+          expected[index] = block;
+        }
+
+        if (operation % 100 == 0) {
+          assertBlocks(expected, blocks, storage);
+        }
+      }
+
+      assertBlocks(expected, blocks, storage);
+      assertBlocks(expected, blocks, (BlockStorage19) storage.copy());
+
+      VirtualBlock[] palette = storage.getPalette();
+      if (palette != null && storage.getPaletteStorage() != null && storage.getPaletteStorage().getBitsPerEntry() <= 8) {
+        assertBlocks(expected, blocks, BlockStorage19.ofPacked(version, palette, storage.getPaletteStorage()));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 16, 17, 300})
+  public void testSetPaletted(int blockCount) {
+    VirtualBlock[] blocks = createBlocks(blockCount);
+    Random random = new Random(blockCount);
+    int[] indices = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    VirtualBlock[] expected = new VirtualBlock[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    for (int i = 0; i < indices.length; ++i) {
+      indices[i] = random.nextInt(blocks.length);
+      expected[i] = blocks[indices[i]];
+    }
+
+    for (ProtocolVersion version : VERSIONS) {
+      BlockStorage19 storage = new BlockStorage19(version);
+      storage.set(1, 2, 3, blocks[0]);
+      storage.setPaletted(blocks, indices);
+      assertBlocks(expected, blocks, storage);
+    }
+  }
+
+  // Blocks with distinct state ids on every tested version, as the direct palette stores the state ids,
+  // and the storage can't tell apart the blocks that share one.
+  private static VirtualBlock[] createBlocks(int count) {
+    VirtualBlock[] blocks = new VirtualBlock[count];
+    blocks[0] = SimpleBlock.AIR;
+    List<Set<Short>> usedIDs = new ArrayList<>();
+    for (ProtocolVersion version : VERSIONS) {
+      usedIDs.add(new HashSet<>(Set.of(SimpleBlock.AIR.getBlockStateID(version))));
+    }
+
+    short id = 0;
+    for (int i = 1; i < count; ++i) {
+      VirtualBlock block;
+      boolean unique;
+      do {
+        block = SimpleBlock.solid(++id);
+        unique = true;
+        for (int j = 0; j < VERSIONS.length && unique; ++j) {
+          unique = !usedIDs.get(j).contains(block.getBlockStateID(VERSIONS[j]));
+        }
+      } while (!unique);
+
+      for (int j = 0; j < VERSIONS.length; ++j) {
+        usedIDs.get(j).add(block.getBlockStateID(VERSIONS[j]));
+      }
+
+      blocks[i] = block;
+    }
+
+    return blocks;
+  }
+
+  private static void assertBlocks(VirtualBlock[] expected, VirtualBlock[] blocks, BlockStorage19 storage) {
+    for (int i = 0; i < expected.length; ++i) {
+      Assertions.assertSame(expected[i], storage.get(i & 15, i >> 8, i >> 4 & 15), "block at index " + i);
+    }
+
+    for (VirtualBlock block : blocks) {
+      boolean contained = false;
+      for (VirtualBlock expectedBlock : expected) {
+        contained |= expectedBlock == block;
+      }
+
+      Assertions.assertEquals(contained, storage.contains(block), "contains " + block);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.protocol.util;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.proxy.protocol.ProtocolUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import java.util.Random;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.api.chunk.data.ChunkSnapshot;
+import net.elytrium.limboapi.api.chunk.util.CompactStorage;
+import net.elytrium.limboapi.mcprotocollib.BitStorage116;
+import net.elytrium.limboapi.mcprotocollib.BitStorage19;
+import net.elytrium.limboapi.protocol.data.BlockStorage19;
+import net.elytrium.limboapi.server.world.SimpleBlock;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// The cached sections are decoded back and compared with the chunk blocks and with the BlockStorage19 encoding of the same blocks.
+public class NetworkSectionCacheTest {
+
+  @BeforeAll
+  public static void init() {
+    SimpleBlock.init();
+    WireFormat.init();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 16, 17, 300})
+  public void testEncoded(int blockCount) {
+    VirtualBlock[] blocks = new VirtualBlock[blockCount];
+    blocks[0] = SimpleBlock.AIR;
+    for (int i = 1; i < blockCount; ++i) {
+      blocks[i] = SimpleBlock.solid((short) i);
+    }
+
+    Random random = new Random(blockCount);
+    SimpleChunk chunk = new SimpleChunk(0, 0);
+    VirtualBlock[] expected = new VirtualBlock[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    for (int i = 0; i < expected.length; ++i) {
+      expected[i] = blocks[random.nextInt(blocks.length)];
+      chunk.setBlock(i & 15, i >> 8, i >> 4 & 15, expected[i]);
+    }
+
+    ChunkSnapshot snapshot = chunk.getFullChunkSnapshot();
+    NetworkSectionCache.Entry entry = NetworkSectionCache.createUncached(snapshot.getSections()[0], snapshot, 0);
+    // 1.7 and 1.8 sections are written from the legacy storages.
+    for (WireFormat format : WireFormat.of(ProtocolVersion.MINECRAFT_1_9, ProtocolVersion.MAXIMUM_VERSION)) {
+      ProtocolVersion version = format.getVersion();
+      int nonAir = 0;
+      int fluids = 0;
+      int[] expectedStates = new int[expected.length];
+      BlockStorage19 storage = new BlockStorage19(version);
+      for (int i = 0; i < expected.length; ++i) {
+        nonAir += expected[i].isAir() ? 0 : 1;
+        fluids += SimpleBlock.isFluid(expected[i]) ? 1 : 0;
+        expectedStates[i] = expected[i].getBlockStateID(version);
+        storage.set(i & 15, i >> 8, i >> 4 & 15, expected[i]);
+      }
+
+      ByteBuf encoded = Unpooled.wrappedBuffer(entry.getEncoded(version));
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_14) >= 0) {
+        Assertions.assertEquals(nonAir, encoded.readShort(), "block count on " + version);
+        if (version.compareTo(ProtocolVersion.MINECRAFT_26_1) >= 0) {
+          Assertions.assertEquals(fluids, encoded.readShort(), "fluid count on " + version);
+        }
+      }
+
+      Assertions.assertArrayEquals(expectedStates, readStates(encoded, version), "cached states on " + version);
+
+      ByteBuf written = Unpooled.buffer();
+      storage.write(written, version, 0);
+      Assertions.assertArrayEquals(expectedStates, readStates(written, version), "written states on " + version);
+      Assertions.assertEquals(0, written.readableBytes(), "storage length on " + version);
+    }
+  }
+
+  @Test
+  public void testSharedEntries() {
+    VirtualBlock stone = SimpleBlock.solid((short) 1);
+    VirtualBlock nonBlockingStone = SimpleBlock.solid(false, (short) 1);
+    SimpleChunk first = new SimpleChunk(0, 0);
+    SimpleChunk second = new SimpleChunk(1, 0);
+    SimpleChunk nonBlocking = new SimpleChunk(2, 0);
+    for (int posY = 0; posY < 16; posY += 3) {
+      first.fill(0, posY, 0, 15, posY, 15, stone);
+      second.fill(0, posY, 0, 15, posY, 15, stone);
+      nonBlocking.fill(0, posY, 0, 15, posY, 15, nonBlockingStone);
+    }
+
+    int size = NetworkSectionCache.size();
+    NetworkSectionCache.Lease lease = new NetworkSectionCache.Lease();
+    ChunkSnapshot firstSnapshot = first.getFullChunkSnapshot();
+    ChunkSnapshot secondSnapshot = second.getFullChunkSnapshot();
+    ChunkSnapshot nonBlockingSnapshot = nonBlocking.getFullChunkSnapshot();
+    NetworkSectionCache.Entry firstEntry = lease.acquire(firstSnapshot.getSections()[0], firstSnapshot, 0);
+    Assertions.assertSame(firstEntry, lease.acquire(secondSnapshot.getSections()[0], secondSnapshot, 0));
+    // The heightmaps are filled from the entry palette, so the motion blocking flag has to be a part of the key.
+    Assertions.assertNotSame(firstEntry, lease.acquire(nonBlockingSnapshot.getSections()[0], nonBlockingSnapshot, 0));
+    Assertions.assertEquals(size + 2, NetworkSectionCache.size());
+
+    lease.release();
+    Assertions.assertEquals(size, NetworkSectionCache.size());
+  }
+
+  private static int[] readStates(ByteBuf buf, ProtocolVersion version) {
+    int[] states = new int[SimpleChunk.MAX_BLOCKS_PER_SECTION];
+    int bitsPerEntry = buf.readUnsignedByte();
+    if (bitsPerEntry == 0) {
+      Arrays.fill(states, ProtocolUtils.readVarInt(buf));
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0) {
+        Assertions.assertEquals(0, ProtocolUtils.readVarInt(buf));
+      }
+
+      return states;
+    }
+
+    int[] palette = null;
+    if (bitsPerEntry > 8) {
+      if (version.compareTo(ProtocolVersion.MINECRAFT_1_13) < 0) {
+        Assertions.assertEquals(0, ProtocolUtils.readVarInt(buf));
+      }
+    } else {
+      palette = new int[ProtocolUtils.readVarInt(buf)];
+      for (int i = 0; i < palette.length; ++i) {
+        palette[i] = ProtocolUtils.readVarInt(buf);
+      }
+    }
+
+    boolean spanning = version.compareTo(ProtocolVersion.MINECRAFT_1_16) < 0;
+    int longs = spanning
+        ? states.length * bitsPerEntry / Long.SIZE
+        : (states.length + Long.SIZE / bitsPerEntry - 1) / (Long.SIZE / bitsPerEntry);
+    if (version.compareTo(ProtocolVersion.MINECRAFT_1_21_5) < 0) {
+      Assertions.assertEquals(longs, ProtocolUtils.readVarInt(buf));
+    }
+
+    long[] data = new long[longs];
+    for (int i = 0; i < longs; ++i) {
+      data[i] = buf.readLong();
+    }
+
+    CompactStorage storage = spanning ? new BitStorage19(bitsPerEntry, data) : new BitStorage116(bitsPerEntry, states.length, data);
+    for (int i = 0; i < states.length; ++i) {
+      states[i] = palette == null ? storage.get(i) : palette[storage.get(i)];
+    }
+
+    return states;
+  }
+}
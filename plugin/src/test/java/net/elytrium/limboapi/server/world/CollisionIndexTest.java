@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2021 - 2025 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.limboapi.server.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.elytrium.limboapi.api.chunk.VirtualBlock;
+import net.elytrium.limboapi.server.world.chunk.SimpleChunk;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+// The index is checked against the chunk blocks after the build and after each kind of in place update.
+public class CollisionIndexTest {
+
+  private static final int MIN_CHUNK = -2;
+  private static final int MAX_CHUNK = 1;
+
+  @BeforeAll
+  public static void init() {
+    SimpleBlock.init();
+  }
+
+  @Test
+  public void testUpdates() {
+    VirtualBlock[] blocks = {
+        SimpleBlock.AIR,
+        SimpleBlock.solid(true, (short) 1),
+        SimpleBlock.solid(false, (short) 2),
+        SimpleBlock.nonSolid(true, (short) 3),
+        SimpleBlock.nonSolid(false, (short) 4)
+    };
+
+    Random random = new Random(0);
+    List<SimpleChunk> chunks = new ArrayList<>();
+    for (int chunkX = MIN_CHUNK; chunkX <= MAX_CHUNK; ++chunkX) {
+      for (int chunkZ = MIN_CHUNK; chunkZ <= MAX_CHUNK; ++chunkZ) {
+        SimpleChunk chunk = new SimpleChunk(chunkX, chunkZ);
+        chunk.fill(0, 0, 0, 15, random.nextInt(40), 15, blocks[random.nextInt(blocks.length)]);
+        for (int i = 0; i < 2000; ++i) {
+          chunk.setBlock(random.nextInt(16), random.nextInt(256), random.nextInt(16), blocks[random.nextInt(blocks.length)]);
+        }
+
+        chunks.add(chunk);
+      }
+    }
+
+    CollisionIndex index = CollisionIndex.build(chunks);
+    assertIndex(chunks, index);
+
+    for (int i = 0; i < 2000; ++i) {
+      int posX = random.nextInt((MAX_CHUNK - MIN_CHUNK + 1) << 4) + (MIN_CHUNK << 4);
+      int posY = random.nextInt(256);
+      int posZ = random.nextInt((MAX_CHUNK - MIN_CHUNK + 1) << 4) + (MIN_CHUNK << 4);
+      VirtualBlock block = blocks[random.nextInt(blocks.length)];
+      getChunk(chunks, posX, posZ).setBlock(posX & 15, posY, posZ & 15, block);
+      Assertions.assertTrue(index.update(posX, posY, posZ, block));
+    }
+
+    assertIndex(chunks, index);
+
+    for (int i = 0; i < 20; ++i) {
+      SimpleChunk chunk = chunks.get(random.nextInt(chunks.size()));
+      int fromY = random.nextInt(256);
+      int toY = Math.min(fromY + random.nextInt(40), 255);
+      int fromX = random.nextInt(16);
+      int fromZ = random.nextInt(16);
+      int toX = fromX + random.nextInt(16 - fromX);
+      int toZ = fromZ + random.nextInt(16 - fromZ);
+      VirtualBlock block = blocks[random.nextInt(blocks.length)];
+      chunk.fill(fromX, fromY, fromZ, toX, toY, toZ, block);
+      int chunkX = chunk.getPosX() << 4;
+      int chunkZ = chunk.getPosZ() << 4;
+      Assertions.assertTrue(index.fill(chunkX + fromX, fromY, chunkZ + fromZ, chunkX + toX, toY, chunkZ + toZ, block));
+    }
+
+    assertIndex(chunks, index);
+
+    for (SimpleChunk chunk : chunks) {
+      chunk.replace(blocks[1], blocks[4]);
+      chunk.replace(SimpleBlock.AIR, blocks[2]);
+      Assertions.assertTrue(index.update(chunk, 0, 15));
+    }
+
+    assertIndex(chunks, index);
+
+    for (int i = 0; i < 500; ++i) {
+      int fromX = random.nextInt((MAX_CHUNK - MIN_CHUNK + 1) << 4) + (MIN_CHUNK << 4);
+      int fromY = random.nextInt(256);
+      int fromZ = random.nextInt((MAX_CHUNK - MIN_CHUNK + 1) << 4) + (MIN_CHUNK << 4);
+      int toX = Math.min(fromX + random.nextInt(20), (MAX_CHUNK + 1 << 4) - 1);
+      int toY = Math.min(fromY + random.nextInt(4), 255);
+      int toZ = Math.min(fromZ + random.nextInt(4), (MAX_CHUNK + 1 << 4) - 1);
+      boolean expected = false;
+      for (int posY = fromY; posY <= toY; ++posY) {
+        for (int posZ = fromZ; posZ <= toZ; ++posZ) {
+          for (int posX = fromX; posX <= toX; ++posX) {
+            expected |= getChunk(chunks, posX, posZ).getBlock(posX & 15, posY, posZ & 15).isSolid();
+          }
+        }
+      }
+
+      Assertions.assertEquals(expected, index.hasSolid(fromX, fromY, fromZ, toX, toY, toZ), "solid in box " + i);
+    }
+
+    SimpleChunk outside = new SimpleChunk(MAX_CHUNK + 1, 0);
+    Assertions.assertFalse(index.update(outside, 0, 15), "chunks outside of the index require a rebuild");
+    Assertions.assertFalse(index.update((MAX_CHUNK + 1) << 4, 10, 0, blocks[1]), "blocks outside of the index require a rebuild");
+    Assertions.assertTrue(index.update(0, 256, 0, blocks[1]), "blocks above the world are ignored");
+  }
+
+  private static SimpleChunk getChunk(List<SimpleChunk> chunks, int posX, int posZ) {
+    for (SimpleChunk chunk : chunks) {
+      if (chunk.getPosX() == posX >> 4 && chunk.getPosZ() == posZ >> 4) {
+        return chunk;
+      }
+    }
+
+    throw new IllegalArgumentException("No chunk at " + posX + " " + posZ);
+  }
+
+  private static void assertIndex(List<SimpleChunk> chunks, CollisionIndex index) {
+    for (SimpleChunk chunk : chunks) {
+      for (int posY = 0; posY < 256; ++posY) {
+        for (int posZ = 0; posZ < 16; ++posZ) {
+          for (int posX = 0; posX < 16; ++posX) {
+            VirtualBlock block = chunk.getBlock(posX, posY, posZ);
+            int worldX = chunk.getPosX() << 4 | posX;
+            int worldZ = chunk.getPosZ() << 4 | posZ;
+            String position = worldX + " " + posY + " " + worldZ;
+            Assertions.assertEquals(block.isSolid(), index.isSolid(worldX, posY, worldZ), "solid at " + position);
+            Assertions.assertEquals(block.isMotionBlocking(), index.isMotionBlocking(worldX, posY, worldZ), "motion blocking at " + position);
+            Assertions.assertEquals(block.isSolid(), index.hasSolid(worldX, posY, worldZ, worldX, posY, worldZ), "solid box at " + position);
+          }
+        }
+      }
+    }
+  }
+}